@@ -0,0 +1,154 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+// 批量放置：每个模板只加载一次（同时预先计算放置顺序和旋转表），之后按并发上限逐个启动生成
+// 所有建筑共用全局放置调度器的时间预算
+public class BatchPlacement extends BukkitRunnable {
+    private static final long CHECK_PERIOD_TICKS = 10;
+
+    public static class Entry {
+        private final String templateName;
+        private final Location location;
+        private final int rotation;
+
+        public Entry(String templateName, Location location, int rotation) {
+            this.templateName = templateName;
+            this.location = location;
+            this.rotation = RotationUtil.normalizeRotation(rotation);
+        }
+
+        public String getTemplateName() { return templateName; }
+        public Location getLocation() { return location; }
+        public int getRotation() { return rotation; }
+    }
+
+    private final TemplateManagerPlugin plugin;
+    private final Player requester;
+    private final Deque<Entry> queue;
+    private final Map<String, BuildingTemplate> templates;
+    private final int maxConcurrent;
+    private final int total;
+    private int active = 0;
+
+    private BatchPlacement(TemplateManagerPlugin plugin, Player requester, List<Entry> entries,
+                           Map<String, BuildingTemplate> templates) {
+        this.plugin = plugin;
+        this.requester = requester;
+        this.queue = new ArrayDeque<>(entries);
+        this.templates = templates;
+        this.maxConcurrent = Math.max(1, plugin.getConfig().getInt("generation.batch_max_concurrent", 8));
+        this.total = entries.size();
+    }
+
+    // 在异步线程加载用到的模板，完成后回到主线程开始放置
+    public static void start(TemplateManagerPlugin plugin, Player requester, List<Entry> entries) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            Map<String, BuildingTemplate> templates = new HashMap<>();
+            Set<String> missing = new TreeSet<>();
+            for (Entry entry : entries) {
+                String name = entry.getTemplateName();
+                if (templates.containsKey(name) || missing.contains(name)) continue;
+
+                BuildingTemplate template = plugin.getTemplateManager().templateExists(name)
+                        ? plugin.getTemplateManager().loadTemplate(name) : null;
+                if (template == null) {
+                    missing.add(name);
+                    continue;
+                }
+                template.getPlacementOrder();
+                template.getRotationTable();
+                templates.put(name, template);
+            }
+
+            List<Entry> valid = new ArrayList<>();
+            for (Entry entry : entries) {
+                if (templates.containsKey(entry.getTemplateName())) {
+                    valid.add(entry);
+                }
+            }
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (!missing.isEmpty()) {
+                    requester.sendMessage(ChatColor.RED + "以下模板不存在或加载失败，已跳过: " + String.join(", ", missing));
+                }
+                if (valid.isEmpty()) {
+                    requester.sendMessage(ChatColor.RED + "没有可放置的建筑");
+                    return;
+                }
+                requester.sendMessage(ChatColor.GREEN + "开始批量放置 " + valid.size() + " 个建筑（"
+                        + templates.size() + " 个模板）");
+                new BatchPlacement(plugin, requester, valid, templates)
+                        .runTaskTimer(plugin, 0, CHECK_PERIOD_TICKS);
+            });
+        });
+    }
+
+    @Override
+    public void run() {
+        while (active < maxConcurrent && !queue.isEmpty()) {
+            Entry entry = queue.poll();
+            active++;
+            templates.get(entry.getTemplateName()).generate(
+                    requester.getUniqueId(), entry.getLocation(), entry.getRotation(), () -> active--);
+        }
+
+        if (queue.isEmpty() && active == 0) {
+            requester.sendMessage(ChatColor.GREEN + "批量放置完成: " + total + " 个建筑");
+            cancel();
+        }
+    }
+
+    // 网格：从 origin 起沿 +X（列）和 +Z（行）排列，spacing 为相邻建筑中心的间距
+    public static List<Entry> grid(String templateName, Location origin, int rows, int columns,
+                                   int spacing, int rotation) {
+        List<Entry> entries = new ArrayList<>(rows * columns);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                entries.add(new Entry(templateName,
+                        origin.clone().add(column * spacing, 0, row * spacing), rotation));
+            }
+        }
+        return entries;
+    }
+
+    // 放置列表文件：每行 "模板 x y z [旋转角度]"，空行和 # 开头的行忽略
+    public static List<Entry> readFile(File file, World world) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] parts = line.split("\\s+");
+            if (parts.length < 4) {
+                throw new IOException("第 " + lineNumber + " 行格式错误: " + line);
+            }
+            if (!TemplateManager.isValidName(parts[0])) {
+                throw new IOException("第 " + lineNumber + " 行模板名无效: " + parts[0]);
+            }
+            try {
+                double x = Double.parseDouble(parts[1]);
+                double y = Double.parseDouble(parts[2]);
+                double z = Double.parseDouble(parts[3]);
+                int rotation = parts.length >= 5 ? Integer.parseInt(parts[4]) : 0;
+                entries.add(new Entry(parts[0], new Location(world, x, y, z), rotation));
+            } catch (NumberFormatException e) {
+                throw new IOException("第 " + lineNumber + " 行数字无效: " + line);
+            }
+        }
+        return entries;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,98 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.TileState;
+import org.bukkit.block.data.BlockData;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// 一批待写入的方块：按区块分段排序后写入，同一区块只解析一次，写入时不触发物理和邻居更新
+// 世界中已是目标状态的格子不再写入；目标为空气时任意一种空气都算
+public class BlockBatch {
+    public interface WriteListener {
+        // previous 为写入前的状态副本；previousTile 为被覆盖的方块实体快照，不是方块实体时为 null
+        void written(int tag, int x, int y, int z, BlockData previous, BlockState previousTile, BlockData data);
+    }
+
+    private final List<Entry> entries;
+
+    public BlockBatch(int capacity) {
+        this.entries = new ArrayList<>(capacity);
+    }
+
+    // tag 由调用方定义（如模板格子索引），写入后原样传给监听器
+    public void add(int tag, int x, int y, int z, BlockData data) {
+        entries.add(new Entry(tag, x, y, z, data));
+    }
+
+    public int size() { return entries.size(); }
+
+    // 必须在主线程调用，返回实际写入的数量
+    public int apply(World world, WriteListener listener) {
+        entries.sort(Comparator.comparingLong(entry -> entry.sectionKey));
+        Chunk chunk = null;
+        int chunkX = 0;
+        int chunkZ = 0;
+        int written = 0;
+        for (Entry entry : entries) {
+            int cx = entry.x >> 4;
+            int cz = entry.z >> 4;
+            if (chunk == null || cx != chunkX || cz != chunkZ) {
+                chunk = world.getChunkAt(cx, cz);
+                chunkX = cx;
+                chunkZ = cz;
+            }
+
+            Block block = chunk.getBlock(entry.x & 15, entry.y, entry.z & 15);
+            Material current = block.getType();
+            BlockData previous = null;
+            if (entry.data.getMaterial().isAir()) {
+                if (current.isAir()) continue;
+            } else if (current == entry.data.getMaterial()) {
+                previous = block.getBlockData();
+                if (previous.equals(entry.data)) continue;
+            }
+
+            BlockState previousTile = null;
+            if (listener != null) {
+                if (previous == null) {
+                    previous = block.getBlockData();
+                }
+                // 只有非空气方块可能带方块实体；先取非快照状态判断类型，是方块实体时再取快照
+                if (!current.isAir() && block.getState(false) instanceof TileState) {
+                    previousTile = block.getState();
+                }
+            }
+            block.setBlockData(entry.data, false);
+            written++;
+            if (listener != null) {
+                listener.written(entry.tag, entry.x, entry.y, entry.z, previous, previousTile, entry.data);
+            }
+        }
+        entries.clear();
+        return written;
+    }
+
+    private static class Entry {
+        final int tag;
+        final int x, y, z;
+        final long sectionKey;
+        final BlockData data;
+
+        Entry(int tag, int x, int y, int z, BlockData data) {
+            this.tag = tag;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.sectionKey = ((long) (x >> 4) & 0x3FFFFF) << 42 | ((long) (z >> 4) & 0x3FFFFF) << 20
+                    | ((y >> 4) & 0xFFFFF);
+            this.data = data;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.Bukkit;
+import org.bukkit.block.data.BlockData;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// 全局方块数据缓存：每种方块状态字符串只解析一次，每个旋转角度只旋转一次
+// 返回的实例在所有建筑间共享，不能直接修改；需要可变副本时使用 getMutable
+public class BlockDataCache {
+    private static final Map<String, BlockData> parsed = new ConcurrentHashMap<>();
+    private static final Map<String, BlockData[]> rotated = new ConcurrentHashMap<>();
+
+    private static final LongAdder parseHits = new LongAdder();
+    private static final LongAdder parseMisses = new LongAdder();
+    private static final LongAdder rotationHits = new LongAdder();
+    private static final LongAdder rotationMisses = new LongAdder();
+
+    public static BlockData get(String state) {
+        BlockData data = parsed.get(state);
+        if (data != null) {
+            parseHits.increment();
+            return data;
+        }
+        parseMisses.increment();
+        return parsed.computeIfAbsent(state, Bukkit::createBlockData);
+    }
+
+    public static BlockData getMutable(String state) {
+        return get(state).clone();
+    }
+
+    public static BlockData getRotated(String state, int rotation) {
+        rotation = RotationUtil.normalizeRotation(rotation);
+        if (rotation == 0) {
+            return get(state);
+        }
+
+        BlockData[] variants = rotated.computeIfAbsent(state, k -> new BlockData[4]);
+        int slot = rotation / 90;
+        BlockData data = variants[slot];
+        if (data != null) {
+            rotationHits.increment();
+            return data;
+        }
+        rotationMisses.increment();
+
+        data = RotationUtil.rotateBlockData(get(state), rotation);
+        variants[slot] = data;
+        return data;
+    }
+
+    public static void clear() {
+        parsed.clear();
+        rotated.clear();
+    }
+
+    public static int getParsedCount() { return parsed.size(); }
+    public static int getRotatedCount() { return rotated.size(); }
+    public static long getParseHits() { return parseHits.sum(); }
+    public static long getParseMisses() { return parseMisses.sum(); }
+    public static long getRotationHits() { return rotationHits.sum(); }
+    public static long getRotationMisses() { return rotationMisses.sum(); }
+}
\ No newline at end of file
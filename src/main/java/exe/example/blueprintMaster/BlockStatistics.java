@@ -0,0 +1,66 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Directional;
+
+import java.util.*;
+
+// 保存模板时的方块统计，在生成结构数据的同一次扫描中累计
+public class BlockStatistics {
+    private static final Set<Material> COMBUSTIBLE = EnumSet.of(
+            Material.OAK_PLANKS, Material.SPRUCE_PLANKS, Material.BIRCH_PLANKS,
+            Material.OAK_LOG, Material.SPRUCE_LOG, Material.BIRCH_LOG,
+            Material.BOOKSHELF, Material.CHEST, Material.TNT
+    );
+
+    private final int[] materialCounts = new int[Material.values().length];
+    private int totalBlocks;
+    private int nonAirBlocks;
+    private int directionalBlocks;
+    private int combustibleBlocks;
+
+    public void record(BlockData data) {
+        totalBlocks++;
+        if (data == null) return;
+
+        Material type = data.getMaterial();
+        if (type.isAir()) return;
+
+        nonAirBlocks++;
+        materialCounts[type.ordinal()]++;
+        if (data instanceof Directional) {
+            directionalBlocks++;
+        }
+        if (COMBUSTIBLE.contains(type)) {
+            combustibleBlocks++;
+        }
+    }
+
+    public int getTotalBlocks() { return totalBlocks; }
+    public int getNonAirBlocks() { return nonAirBlocks; }
+    public int getDirectionalBlocks() { return directionalBlocks; }
+    public int getCombustibleBlocks() { return combustibleBlocks; }
+
+    public int getCount(Material material) {
+        return materialCounts[material.ordinal()];
+    }
+
+    // 材料直方图（不含空气），按数量从多到少排序
+    public Map<Material, Integer> getHistogram() {
+        Material[] materials = Material.values();
+        List<Material> present = new ArrayList<>();
+        for (int i = 0; i < materialCounts.length; i++) {
+            if (materialCounts[i] > 0) {
+                present.add(materials[i]);
+            }
+        }
+        present.sort((a, b) -> Integer.compare(materialCounts[b.ordinal()], materialCounts[a.ordinal()]));
+
+        Map<Material, Integer> histogram = new LinkedHashMap<>();
+        for (Material material : present) {
+            histogram.put(material, materialCounts[material.ordinal()]);
+        }
+        return histogram;
+    }
+}
\ No newline at end of file
@@ -1,10 +1,11 @@
 package exe.example.blueprintMaster;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.Particle;
 import org.bukkit.entity.*;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -14,13 +15,19 @@ public class BuildingAggroSystem {
     private final JavaPlugin plugin;
     private final BuildingHealthSystem healthSystem;
     private final Map<UUID, LivingEntity> buildingEntities;
+    private final BukkitTask aggroTask;
 
     public BuildingAggroSystem(JavaPlugin plugin, BuildingHealthSystem healthSystem,
                                Map<UUID, LivingEntity> buildingEntities) {
         this.plugin = plugin;
         this.healthSystem = healthSystem;
         this.buildingEntities = buildingEntities;
-        startAggroTask();
+        this.aggroTask = startAggroTask();
+    }
+
+    // 重载或停用插件时调用，停止仇恨任务
+    public void shutdown() {
+        aggroTask.cancel();
     }
 
     public void addAggro(UUID buildingId, LivingEntity entity, int priority) {
@@ -40,55 +47,56 @@ public class BuildingAggroSystem {
         addAggro(buildingId, entity, 1);
     }
 
-    private void startAggroTask() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                for (BuildingHealthData data : healthSystem.getBuildings().values()) {
-                    if (data.isGenerating() || data.getHealth() <= 0 || data.isCollapsing()) continue;
-
-                    UUID buildingId = data.getBuildingId();
-                    Map<UUID, Integer> aggroMap = buildingAggro.getOrDefault(buildingId, Collections.emptyMap());
-                    if (aggroMap.isEmpty()) continue;
-
-                    LivingEntity buildingEntity = buildingEntities.get(buildingId);
-                    if (buildingEntity == null) continue;
-
-                    List<UUID> sortedMobs = aggroMap.entrySet().stream()
-                            .sorted(Map.Entry.<UUID, Integer>comparingByValue().reversed())
-                            .map(Map.Entry::getKey)
-                            .collect(Collectors.toList());
-
-                    for (UUID mobId : sortedMobs) {
-                        Entity entity = Bukkit.getEntity(mobId);
-
-                        if (entity == null || entity.isDead() || !entity.isValid()) {
-                            aggroMap.remove(mobId);
-                            continue;
-                        }
-
-                        if (entity instanceof Mob mob) {
-                            if (mob.getLocation().distance(data.getCenter()) > 50) {
-                                aggroMap.remove(mobId);
-                                continue;
-                            }
-
-                            mob.setTarget(buildingEntity);
-                            mob.setAware(true);
-                            mob.setNoDamageTicks(0);
-
-                            mob.getWorld().spawnParticle(
-                                    Particle.HEART,
-                                    mob.getEyeLocation(),
-                                    3
-                            );
-                        }
-                    }
+    // 每座建筑每 20 tick 处理一次仇恨列表，处理量分摊到这 20 个 tick
+    private BukkitTask startAggroTask() {
+        return new TimeSlicedExecutor<UUID>(plugin, "建筑仇恨", 20,
+                () -> plugin.getConfig().getDouble("attack_system.tick_budget_ms", 1.0),
+                () -> new ArrayList<>(buildingAggro.keySet()),
+                this::processBuildingAggro,
+                () -> buildingAggro.entrySet().removeIf(entry -> entry.getValue().isEmpty())).start();
+    }
+
+    private void processBuildingAggro(UUID buildingId) {
+        BuildingHealthData data = healthSystem.getBuildings().get(buildingId);
+        if (data == null || data.isGenerating() || data.getHealth() <= 0 || data.isCollapsing()) return;
+
+        Map<UUID, Integer> aggroMap = buildingAggro.getOrDefault(buildingId, Collections.emptyMap());
+        if (aggroMap.isEmpty()) return;
+
+        LivingEntity buildingEntity = buildingEntities.get(buildingId);
+        if (buildingEntity == null) return;
+
+        List<UUID> sortedMobs = aggroMap.entrySet().stream()
+                .sorted(Map.Entry.<UUID, Integer>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+        for (UUID mobId : sortedMobs) {
+            Entity entity = Bukkit.getEntity(mobId);
+
+            if (entity == null || entity.isDead() || !entity.isValid()) {
+                aggroMap.remove(mobId);
+                continue;
+            }
+
+            if (entity instanceof Mob mob) {
+                Location mobLoc = mob.getLocation();
+                if (data.distanceSquaredToCenter(mobLoc.getX(), mobLoc.getY(), mobLoc.getZ()) > 50 * 50) {
+                    aggroMap.remove(mobId);
+                    continue;
                 }
 
-                buildingAggro.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+                mob.setTarget(buildingEntity);
+                mob.setAware(true);
+                mob.setNoDamageTicks(0);
+
+                mob.getWorld().spawnParticle(
+                        Particle.HEART,
+                        mob.getEyeLocation(),
+                        3
+                );
             }
-        }.runTaskTimer(plugin, 0, 20);
+        }
     }
 
     public void removeBuildingAggro(UUID buildingId) {
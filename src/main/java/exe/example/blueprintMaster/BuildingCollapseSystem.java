@@ -49,7 +49,14 @@ public class BuildingCollapseSystem {
                 0.8f
         );
 
-        new BuildingCollapseTask(plugin, data, this, healthSystem).runTaskTimer(plugin, 0, 2);
+        // 先异步加载建筑覆盖的区块并加票据，避免逐层破坏时同步加载区块；加载失败时照常坍塌
+        BuildingCollapseTask task = new BuildingCollapseTask(plugin, data, this, healthSystem);
+        int[] bounds = task.getBounds();
+        ChunkPreloader.load(plugin, data.getBottomCenter().getWorld(), bounds[0], bounds[1], bounds[2], bounds[3],
+                chunks -> {
+                    task.chunks = chunks;
+                    task.runTaskTimer(plugin, 0, 2);
+                });
     }
 
     private class BuildingCollapseTask extends BukkitRunnable {
@@ -61,6 +68,7 @@ public class BuildingCollapseSystem {
         private final Random random = new Random();
         private final List<Location>[] layers; // 预计算所有层的方块位置
         private int currentLayerIndex;
+        private ChunkPreloader chunks; // 区块票据，可为 null
         public BuildingCollapseTask(JavaPlugin plugin,
                                     BuildingHealthData data,
                                     BuildingCollapseSystem collapseSystem,
@@ -88,6 +96,20 @@ public class BuildingCollapseSystem {
             this.currentLayerIndex = data.getHeight() - 1;
         }
 
+        // 底层方块的坐标范围 {minX, minZ, maxX, maxZ}，各层在水平方向上相同
+        int[] getBounds() {
+            Location bottom = data.getBottomCenter();
+            int[] bounds = {bottom.getBlockX(), bottom.getBlockZ(), bottom.getBlockX(), bottom.getBlockZ()};
+            if (layers.length == 0) return bounds;
+            for (Location loc : layers[0]) {
+                bounds[0] = Math.min(bounds[0], loc.getBlockX());
+                bounds[1] = Math.min(bounds[1], loc.getBlockZ());
+                bounds[2] = Math.max(bounds[2], loc.getBlockX());
+                bounds[3] = Math.max(bounds[3], loc.getBlockZ());
+            }
+            return bounds;
+        }
+
         @Override
         public void run() {
             World world = data.getCenter().getWorld();
@@ -101,6 +123,7 @@ public class BuildingCollapseSystem {
                     ((TemplateManagerPlugin) plugin).removePermanentOutline(bottomCenter);
                 }
 
+                if (chunks != null) chunks.release();
                 this.cancel();
                 return;
             }
@@ -14,8 +14,6 @@ import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.ProjectileHitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.projectiles.ProjectileSource;
-import org.bukkit.util.BoundingBox;
-import org.bukkit.util.Vector;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -117,25 +115,7 @@ public class BuildingDamageSystem implements Listener {
     }
 
     private double calculateExactDistanceToSurface(Location location, BuildingHealthData data) {
-        BoundingBox exactBounds = data.getExactBoundingBox();
-        Vector pos = location.toVector();
-
-        // 计算到建筑六个面的最小距离
-        double minDistance = Double.MAX_VALUE;
-
-        // 检查前后两面 (X轴)
-        minDistance = Math.min(minDistance, Math.abs(pos.getX() - exactBounds.getMinX()));
-        minDistance = Math.min(minDistance, Math.abs(pos.getX() - exactBounds.getMaxX()));
-
-        // 检查左右两面 (Z轴)
-        minDistance = Math.min(minDistance, Math.abs(pos.getZ() - exactBounds.getMinZ()));
-        minDistance = Math.min(minDistance, Math.abs(pos.getZ() - exactBounds.getMaxZ()));
-
-        // 检查上下两面 (Y轴)
-        minDistance = Math.min(minDistance, Math.abs(pos.getY() - exactBounds.getMinY()));
-        minDistance = Math.min(minDistance, Math.abs(pos.getY() - exactBounds.getMaxY()));
-
-        return minDistance;
+        return data.distanceToSurface(location.getX(), location.getY(), location.getZ());
     }
 
     @EventHandler
@@ -9,6 +9,8 @@ import org.bukkit.util.BoundingBox;
 import java.util.UUID;
 
 public class BuildingHealthData {
+    public static final double ATTACK_MARGIN = 0.5; // 近战攻击判定范围在精确包围盒外扩展的距离
+
     private boolean attractMonsters;
     private final UUID buildingId;
     private final boolean explosionDamage;
@@ -24,7 +26,12 @@ public class BuildingHealthData {
     private boolean collapsing;
     private UUID entityId;
     private UUID ownerId;
+
+    // 几何数据在构造时计算一次，之后不变；包围盒实例共享，调用方不能修改
     private final BoundingBox boundingBox;
+    private final BoundingBox attackBoundingBox;
+    private final double centerX, centerY, centerZ;
+    private final int minChunkX, minChunkZ, maxChunkX, maxChunkZ;
 
     public void showHealthBar(Player player) {
         if (!player.getWorld().equals(getCenter().getWorld())) return;
@@ -53,14 +60,9 @@ public class BuildingHealthData {
         }
     }
 
+    // 返回可修改的副本；热路径使用 getBoundingBox 或下面的坐标方法，避免分配
     public BoundingBox getExactBoundingBox() {
-        return RotationUtil.calculateExactBoundingBox(
-                bottomCenter,
-                width,
-                height,
-                length,
-                rotation
-        );
+        return boundingBox.clone();
     }
 
     public BuildingHealthData(UUID buildingId, Location bottomCenter,
@@ -81,7 +83,15 @@ public class BuildingHealthData {
         this.explosionDamage = explosionDamage; // 修复：只赋值一次
         this.generating = generating;
         this.collapsing = false;
-        this.boundingBox = getExactBoundingBox();
+        this.boundingBox = RotationUtil.calculateExactBoundingBox(bottomCenter, width, height, length, this.rotation);
+        this.attackBoundingBox = boundingBox.clone().expand(ATTACK_MARGIN);
+        this.centerX = bottomCenter.getX();
+        this.centerY = bottomCenter.getY() + height / 2.0;
+        this.centerZ = bottomCenter.getZ();
+        this.minChunkX = (int) Math.floor(boundingBox.getMinX()) >> 4;
+        this.minChunkZ = (int) Math.floor(boundingBox.getMinZ()) >> 4;
+        this.maxChunkX = (int) Math.floor(boundingBox.getMaxX()) >> 4;
+        this.maxChunkZ = (int) Math.floor(boundingBox.getMaxZ()) >> 4;
         this.attractMonsters = attractMonsters;
     }
 
@@ -106,6 +116,52 @@ public class BuildingHealthData {
     public BoundingBox getBoundingBox() {
         return boundingBox;
     }
+    public BoundingBox getAttackBoundingBox() { return attackBoundingBox; }
+    public double getCenterX() { return centerX; }
+    public double getCenterY() { return centerY; }
+    public double getCenterZ() { return centerZ; }
+    public int getMinChunkX() { return minChunkX; }
+    public int getMinChunkZ() { return minChunkZ; }
+    public int getMaxChunkX() { return maxChunkX; }
+    public int getMaxChunkZ() { return maxChunkZ; }
+
+    public boolean contains(double x, double y, double z) {
+        return boundingBox.contains(x, y, z);
+    }
+
+    public double distanceSquaredToCenter(double x, double y, double z) {
+        double dx = x - centerX;
+        double dy = y - centerY;
+        double dz = z - centerZ;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    // 到最近一个表面所在平面的距离（不区分内外）
+    public double distanceToSurface(double x, double y, double z) {
+        return Math.min(
+                Math.min(
+                        Math.min(Math.abs(x - boundingBox.getMinX()), Math.abs(x - boundingBox.getMaxX())),
+                        Math.min(Math.abs(z - boundingBox.getMinZ()), Math.abs(z - boundingBox.getMaxZ()))
+                ),
+                Math.min(Math.abs(y - boundingBox.getMinY()), Math.abs(y - boundingBox.getMaxY()))
+        );
+    }
+
+    // 到包围盒的距离，在盒内为 0
+    public double distanceToBounds(double x, double y, double z) {
+        return distanceToBox(boundingBox, x, y, z);
+    }
+
+    public double distanceToAttackBounds(double x, double y, double z) {
+        return distanceToBox(attackBoundingBox, x, y, z);
+    }
+
+    private static double distanceToBox(BoundingBox box, double x, double y, double z) {
+        double dx = Math.max(Math.max(box.getMinX() - x, 0), x - box.getMaxX());
+        double dy = Math.max(Math.max(box.getMinY() - y, 0), y - box.getMaxY());
+        double dz = Math.max(Math.max(box.getMinZ() - z, 0), z - box.getMaxZ());
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
     public UUID getEntityId() { return entityId; }
     public UUID getOwnerId() { return ownerId; }
 
@@ -24,6 +24,7 @@ public class BuildingHealthSystem implements Listener {
     private final Map<UUID, Long> damageTimestamps = new HashMap<>();
     private final Map<UUID, LivingEntity> buildingEntities = new HashMap<>();
     private final Map<UUID, BukkitTask> monsterAttractionTasks = new HashMap<>();
+    private final BuildingSpatialIndex spatialIndex = new BuildingSpatialIndex();
 
     private BuildingAggroSystem aggroSystem;
     private BuildingCollapseSystem collapseSystem;
@@ -93,6 +94,7 @@ public class BuildingHealthSystem implements Listener {
         }
 
         buildings.remove(buildingId);
+        spatialIndex.remove(data);
         damageTimestamps.remove(buildingId);
         aggroSystem.removeBuildingAggro(buildingId);
 
@@ -162,7 +164,11 @@ public class BuildingHealthSystem implements Listener {
         data.setEntityId(buildingEntity.getUniqueId());
         data.setOwnerId(ownerId);
 
-        buildings.put(buildingId, data);
+        BuildingHealthData previous = buildings.put(buildingId, data);
+        if (previous != null) {
+            spatialIndex.remove(previous);
+        }
+        spatialIndex.add(data);
     }
 
     private void startMonsterAttractionEffect(BuildingHealthData data) {
@@ -198,6 +204,16 @@ public class BuildingHealthSystem implements Listener {
         }
     }
 
+    // 重载或停用插件时调用：停止攻击、仇恨和吸引怪物的定时任务，旧实例随后被替换
+    public void shutdown() {
+        monsterAttackSystem.shutdown();
+        aggroSystem.shutdown();
+        for (BukkitTask task : monsterAttractionTasks.values()) {
+            task.cancel();
+        }
+        monsterAttractionTasks.clear();
+    }
+
     private void cancelTask(UUID buildingId) {
         BukkitTask task = monsterAttractionTasks.remove(buildingId);
         if (task != null) {
@@ -295,13 +311,14 @@ public class BuildingHealthSystem implements Listener {
         return buildings.get(buildingId);
     }
 
+    // 通过空间索引只检查该位置所在区块内的建筑
     public BuildingHealthData getBuildingAtLocation(Location loc) {
-        for (BuildingHealthData data : buildings.values()) {
-            if (data.getBoundingBox().contains(loc.toVector())) {
-                return data;
-            }
-        }
-        return null;
+        if (loc.getWorld() == null) return null;
+        return spatialIndex.find(loc.getWorld(), loc.getX(), loc.getY(), loc.getZ());
+    }
+
+    public BuildingSpatialIndex getSpatialIndex() {
+        return spatialIndex;
     }
 
     private LivingEntity createBuildingEntity(Location center, UUID buildingId, int rotation) {
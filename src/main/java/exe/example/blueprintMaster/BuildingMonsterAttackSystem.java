@@ -15,7 +15,7 @@ import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.util.BoundingBox;
+import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.util.Vector;
 
 import java.util.*;
@@ -28,11 +28,11 @@ public class BuildingMonsterAttackSystem implements Listener {
     private static final double MELEE_AGGRO_RANGE = 16.0;
     private static final double RANGED_AGGRO_RANGE = 25.0;
     private static final double CREEPER_EXPLOSION_RANGE = 1.0;
-    private static final double BUILDING_BOUNDS_MARGIN = 0.5;
     private static final long PLAYER_TARGET_TIMEOUT = 5000; // 5 seconds
     private static final double MIN_RANGED_DISTANCE = 5.0;  // 新增：远程怪物的最小攻击距离
     private static final double MAX_RANGED_DISTANCE = 20.0; // 新增：远程怪物的最大攻击距离
     private static final double MOVE_AWAY_SPEED = 0.3;      // 新增：远离速度
+    private static final double TARGET_CLEAR_RANGE = 50.0;  // 与仇恨系统的距离上限一致
 
     private final JavaPlugin plugin;
     private final BuildingHealthSystem healthSystem;
@@ -42,6 +42,8 @@ public class BuildingMonsterAttackSystem implements Listener {
     private final Map<UUID, Long> lastPlayerSightTimes = new HashMap<>();
     private final Map<UUID, Location> ghastDropMissions = new HashMap<>();
     private final Map<UUID, Long> playerTargetFailStartTimes = new HashMap<>();
+    private final List<BuildingHealthData> candidates = new ArrayList<>(); // 复用的空间索引查询结果
+    private final BukkitTask attackTask;
 
     public BuildingMonsterAttackSystem(JavaPlugin plugin, BuildingHealthSystem healthSystem,
                                        Map<UUID, LivingEntity> buildingEntities,
@@ -50,54 +52,70 @@ public class BuildingMonsterAttackSystem implements Listener {
         this.healthSystem = healthSystem;
         this.buildingEntities = buildingEntities;
         this.aggroSystem = aggroSystem;
-        startAttackTask();
+        this.attackTask = startAttackTask();
     }
 
-    private void startAttackTask() {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                cleanDestroyedBuildingTargets();
-                processBuildingAttacks();
-                handleGhastDropMissions();
-            }
-        }.runTaskTimer(plugin, 0, 10); // Run every half second
+    // 重载或停用插件时调用，停止攻击任务
+    public void shutdown() {
+        attackTask.cancel();
     }
 
-    private void handleGhastDropMissions() {
-        Iterator<Map.Entry<UUID, Location>> iterator = ghastDropMissions.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<UUID, Location> entry = iterator.next();
-            UUID ghastId = entry.getKey();
-            Location dropLocation = entry.getValue();
+    // 每只怪物每 10 tick（半秒）决策一次；已毁建筑清理、恶魂空投和逐区块的怪物处理都作为工作项分摊到这 10 个 tick
+    private BukkitTask startAttackTask() {
+        return new TimeSlicedExecutor<Runnable>(plugin, "怪物攻击建筑", 10,
+                () -> plugin.getConfig().getDouble("attack_system.tick_budget_ms", 1.0),
+                this::collectWork,
+                Runnable::run,
+                null).start();
+    }
 
-            Entity entity = Bukkit.getEntity(ghastId);
-            if (!(entity instanceof Ghast)) {
-                iterator.remove();
-                continue;
+    // 轮首只列出工作项，不遍历任何实体
+    private List<Runnable> collectWork() {
+        List<Runnable> work = new ArrayList<>();
+        for (Map.Entry<UUID, LivingEntity> entry : buildingEntities.entrySet()) {
+            BuildingHealthData data = healthSystem.getBuildings().get(entry.getKey());
+            if (data == null || data.isCollapsing()) {
+                UUID buildingId = entry.getKey();
+                work.add(() -> cleanDestroyedBuilding(buildingId));
             }
+        }
+        for (UUID ghastId : ghastDropMissions.keySet()) {
+            work.add(() -> handleGhastDropMission(ghastId));
+        }
+        collectAttackerChunks(work);
+        return work;
+    }
 
-            Ghast ghast = (Ghast) entity;
-            Location currentLoc = ghast.getLocation();
-
-            Vector direction = dropLocation.toVector().subtract(currentLoc.toVector()).normalize();
-            ghast.setVelocity(direction.multiply(0.5));
-
-            if (currentLoc.distance(dropLocation) < 5.0) {
-                World world = dropLocation.getWorld();
-                for (int i = 0; i < 6; i++) {
-                    Location spawnLoc = dropLocation.clone().add(
-                            Math.random() * 4 - 2,
-                            0,
-                            Math.random() * 4 - 2
-                    );
-                    spawnLoc.setY(world.getHighestBlockYAt(spawnLoc) + 1);
-                    world.spawnEntity(spawnLoc, EntityType.ZOMBIFIED_PIGLIN);
-                }
+    private void handleGhastDropMission(UUID ghastId) {
+        Location dropLocation = ghastDropMissions.get(ghastId);
+        if (dropLocation == null) return;
+
+        Entity entity = Bukkit.getEntity(ghastId);
+        if (!(entity instanceof Ghast)) {
+            ghastDropMissions.remove(ghastId);
+            return;
+        }
 
-                ghast.remove();
-                iterator.remove();
+        Ghast ghast = (Ghast) entity;
+        Location currentLoc = ghast.getLocation();
+
+        Vector direction = dropLocation.toVector().subtract(currentLoc.toVector()).normalize();
+        ghast.setVelocity(direction.multiply(0.5));
+
+        if (currentLoc.distance(dropLocation) < 5.0) {
+            World world = dropLocation.getWorld();
+            for (int i = 0; i < 6; i++) {
+                Location spawnLoc = dropLocation.clone().add(
+                        Math.random() * 4 - 2,
+                        0,
+                        Math.random() * 4 - 2
+                );
+                spawnLoc.setY(world.getHighestBlockYAt(spawnLoc) + 1);
+                world.spawnEntity(spawnLoc, EntityType.ZOMBIFIED_PIGLIN);
             }
+
+            ghast.remove();
+            ghastDropMissions.remove(ghastId);
         }
     }
 
@@ -110,46 +128,35 @@ public class BuildingMonsterAttackSystem implements Listener {
         }
     }
 
-    private void cleanDestroyedBuildingTargets() {
-        Iterator<Map.Entry<UUID, LivingEntity>> iterator = buildingEntities.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<UUID, LivingEntity> entry = iterator.next();
-            UUID buildingId = entry.getKey();
-            LivingEntity entity = entry.getValue();
+    // 列出工作项后建筑状态可能已变，处理时重新检查
+    private void cleanDestroyedBuilding(UUID buildingId) {
+        LivingEntity entity = buildingEntities.get(buildingId);
+        if (entity == null) return;
 
-            BuildingHealthData data = healthSystem.getBuildings().get(buildingId);
-            if (data == null || data.isCollapsing()) {
-                clearAllTargets(buildingId, entity.getLocation());
-                aggroSystem.removeBuildingAggro(buildingId);
-                iterator.remove();
-            }
-        }
+        BuildingHealthData data = healthSystem.getBuildings().get(buildingId);
+        if (data != null && !data.isCollapsing()) return;
+
+        clearAllTargets(buildingId, entity);
+        buildingEntities.remove(buildingId);
     }
 
-    private void clearAllTargets(UUID buildingId, Location center) {
+    // 只检查建筑实体周围 TARGET_CLEAR_RANGE 内的怪物，不遍历整个世界
+    private void clearAllTargets(UUID buildingId, LivingEntity buildingEntity) {
         aggroSystem.removeBuildingAggro(buildingId);
 
-        for (Entity mob : center.getWorld().getEntities()) {
+        Location center = buildingEntity.getLocation();
+        for (Entity mob : center.getWorld().getNearbyEntities(center,
+                TARGET_CLEAR_RANGE, TARGET_CLEAR_RANGE, TARGET_CLEAR_RANGE)) {
             if (mob instanceof Mob mobEntity) {
-                if (mobEntity.getTarget() != null &&
-                        (buildingEntities.containsKey(buildingId) ||
-                                mobEntity.getTarget().getLocation().distance(center) < 1.0)) {
+                LivingEntity target = mobEntity.getTarget();
+                if (target != null && (target.equals(buildingEntity)
+                        || target.getLocation().distanceSquared(center) < 1.0)) {
                     mobEntity.setTarget(null);
                 }
             }
         }
     }
 
-    private List<LivingEntity> getNearbyMobs(Location center, double radius) {
-        List<LivingEntity> mobs = new ArrayList<>();
-        for (Entity entity : center.getWorld().getNearbyEntities(center, radius, radius, radius)) {
-            if (entity instanceof LivingEntity && isHostileMob(entity)) {
-                mobs.add((LivingEntity) entity);
-            }
-        }
-        return mobs;
-    }
-
     private boolean isHostileMob(Entity entity) {
         return entity instanceof Monster ||
                 entity instanceof Ghast ||
@@ -157,39 +164,99 @@ public class BuildingMonsterAttackSystem implements Listener {
                 entity instanceof Phantom;
     }
 
-    private void processBuildingAttacks() {
+    private boolean isAttackable(BuildingHealthData data) {
+        return !data.isGenerating() && data.getHealth() > 0 && !data.isCollapsing()
+                && buildingEntities.containsKey(data.getBuildingId());
+    }
+
+    // 以怪物为中心：建筑所在区块外扩仇恨范围内的每个区块是一个工作项，处理时才读取区块里的实体
+    private void collectAttackerChunks(List<Runnable> work) {
+        Set<World> worlds = new HashSet<>();
         for (BuildingHealthData data : healthSystem.getBuildings().values()) {
-            if (data.isGenerating() || data.getHealth() <= 0 || data.isCollapsing()) continue;
+            if (isAttackable(data)) {
+                worlds.add(data.getBottomCenter().getWorld());
+            }
+        }
+
+        int expand = (int) Math.ceil(Math.max(MELEE_AGGRO_RANGE, RANGED_AGGRO_RANGE) / 16);
+        Set<Long> chunkKeys = new HashSet<>();
+        for (World world : worlds) {
+            chunkKeys.clear();
+            healthSystem.getSpatialIndex().coveredChunks(world, expand, chunkKeys);
+            for (long key : chunkKeys) {
+                int cx = BuildingSpatialIndex.chunkX(key);
+                int cz = BuildingSpatialIndex.chunkZ(key);
+                work.add(() -> processChunk(world, cx, cz));
+            }
+        }
+    }
 
-            UUID buildingId = data.getBuildingId();
-            LivingEntity buildingEntity = buildingEntities.get(buildingId);
-            if (buildingEntity == null) continue;
+    // 未加载的区块直接跳过
+    private void processChunk(World world, int chunkX, int chunkZ) {
+        if (!world.isChunkLoaded(chunkX, chunkZ)) return;
 
-            BoundingBox buildingBounds = data.getExactBoundingBox().clone().expand(BUILDING_BOUNDS_MARGIN);
+        for (Entity entity : world.getChunkAt(chunkX, chunkZ).getEntities()) {
+            if (entity instanceof LivingEntity mob && isHostileMob(mob)
+                    && (isMeleeMob(mob) || isRangedMob(mob))) {
+                processMobAttack(mob);
+            }
+        }
+    }
 
-            // Get mobs in range
-            List<LivingEntity> meleeMobs = getNearbyMobs(data.getCenter(), MELEE_AGGRO_RANGE);
-            List<LivingEntity> rangedMobs = getNearbyMobs(data.getCenter(), RANGED_AGGRO_RANGE);
+    // 通过空间索引取附近的建筑，每只怪物只对一座建筑执行近战/远程逻辑，开销随怪物数 + 建筑数增长
+    private void processMobAttack(LivingEntity mob) {
+        if (!mob.isValid()) return;
 
-            long currentTime = System.currentTimeMillis();
+        Location loc = mob.getLocation();
+        double range = Math.max(MELEE_AGGRO_RANGE, RANGED_AGGRO_RANGE);
+        candidates.clear();
+        healthSystem.getSpatialIndex().query(loc.getWorld(),
+                loc.getX() - range, loc.getY() - range, loc.getZ() - range,
+                loc.getX() + range, loc.getY() + range, loc.getZ() + range, candidates);
+        if (candidates.isEmpty()) return;
 
-            // Process melee mobs
-            for (LivingEntity mob : meleeMobs) {
-                if (!isMeleeMob(mob)) continue;
-                handleMeleeMob(mob, data, buildingBounds, buildingEntity, currentTime);
+        long currentTime = System.currentTimeMillis();
+        if (isMeleeMob(mob)) {
+            BuildingHealthData data = selectBuilding(mob, loc, candidates, MELEE_AGGRO_RANGE);
+            if (data != null) {
+                handleMeleeMob(mob, data, buildingEntities.get(data.getBuildingId()), currentTime);
+            }
+        }
+        if (isRangedMob(mob)) {
+            BuildingHealthData data = selectBuilding(mob, loc, candidates, RANGED_AGGRO_RANGE);
+            if (data != null) {
+                handleRangedMob(mob, data, buildingEntities.get(data.getBuildingId()), currentTime);
             }
+        }
+    }
+
+    // 建筑中心在怪物周围 range 的立方体范围内才算候选；优先保持当前目标建筑，否则取中心最近的
+    private BuildingHealthData selectBuilding(LivingEntity mob, Location loc,
+                                              List<BuildingHealthData> candidates, double range) {
+        LivingEntity currentTarget = mob instanceof Mob mobEntity ? mobEntity.getTarget() : null;
+        BuildingHealthData best = null;
+        double bestDistance = Double.MAX_VALUE;
+
+        for (BuildingHealthData data : candidates) {
+            if (!isAttackable(data)) continue;
+            if (Math.abs(loc.getX() - data.getCenterX()) > range
+                    || Math.abs(loc.getY() - data.getCenterY()) > range
+                    || Math.abs(loc.getZ() - data.getCenterZ()) > range) continue;
 
-            // Process ranged mobs
-            for (LivingEntity mob : rangedMobs) {
-                if (!isRangedMob(mob)) continue;
-                handleRangedMob(mob, data, buildingEntity, currentTime);
+            if (currentTarget != null && currentTarget.equals(buildingEntities.get(data.getBuildingId()))) {
+                return data;
+            }
+            double distance = data.distanceSquaredToCenter(loc.getX(), loc.getY(), loc.getZ());
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = data;
             }
         }
+        return best;
     }
 
     private void handleMeleeMob(LivingEntity mob, BuildingHealthData data,
-                                BoundingBox buildingBounds, LivingEntity buildingEntity,
-                                long currentTime) {
+                                LivingEntity buildingEntity, long currentTime) {
         // 修复：添加类型检查（移除无效的类型转换）
         if (!(mob instanceof Mob mobEntity)) return;
 
@@ -214,7 +281,7 @@ public class BuildingMonsterAttackSystem implements Listener {
 
         // If mob is targeting building and in range, attack
         if (mobEntity.getTarget() != null && mobEntity.getTarget().equals(buildingEntity)) {
-            if (isNearBuildingSurface(mob.getLocation(), buildingBounds)) {
+            if (isNearBuildingSurface(mob.getLocation(), data)) {
                 attemptMeleeAttack(mob, data, currentTime);
 
                 // 新增劫掠兽咆哮攻击
@@ -286,7 +353,8 @@ public class BuildingMonsterAttackSystem implements Listener {
 
         // 如果怪物正在攻击建筑
         if (mobEntity.getTarget() != null && mobEntity.getTarget().equals(buildingEntity)) {
-            double distance = mob.getLocation().distance(data.getCenter());
+            Location mobLoc = mob.getLocation();
+            double distance = Math.sqrt(data.distanceSquaredToCenter(mobLoc.getX(), mobLoc.getY(), mobLoc.getZ()));
             double rangedRange = getRangedRange(mob, data);
 
             // 新增：调整距离逻辑
@@ -360,8 +428,8 @@ public class BuildingMonsterAttackSystem implements Listener {
                 mob instanceof Ghast;
     }
 
-    private boolean isNearBuildingSurface(Location mobLoc, BoundingBox buildingBounds) {
-        return calculateDistanceToBounds(mobLoc, buildingBounds) <= MELEE_ATTACK_RANGE;
+    private boolean isNearBuildingSurface(Location mobLoc, BuildingHealthData data) {
+        return data.distanceToAttackBounds(mobLoc.getX(), mobLoc.getY(), mobLoc.getZ()) <= MELEE_ATTACK_RANGE;
     }
 
     private void attemptMeleeAttack(LivingEntity mob, BuildingHealthData data, long currentTime) {
@@ -668,15 +736,7 @@ public class BuildingMonsterAttackSystem implements Listener {
     }
 
     private double calculateExactDistanceToSurface(Location location, BuildingHealthData data) {
-        BoundingBox exactBounds = data.getExactBoundingBox();
-        Vector pos = location.toVector();
-        return Math.min(
-                Math.min(
-                        Math.min(Math.abs(pos.getX() - exactBounds.getMinX()), Math.abs(pos.getX() - exactBounds.getMaxX())),
-                        Math.min(Math.abs(pos.getZ() - exactBounds.getMinZ()), Math.abs(pos.getZ() - exactBounds.getMaxZ()))
-                ),
-                Math.min(Math.abs(pos.getY() - exactBounds.getMinY()), Math.abs(pos.getY() - exactBounds.getMaxY()))
-        );
+        return data.distanceToSurface(location.getX(), location.getY(), location.getZ());
     }
 
     private double getRangedRange(LivingEntity mob, BuildingHealthData data) {
@@ -688,17 +748,6 @@ public class BuildingMonsterAttackSystem implements Listener {
         return RANGED_ATTACK_RANGE;
     }
 
-    private double calculateDistanceToBounds(Location location, BoundingBox bounds) {
-        if (bounds == null) return Double.MAX_VALUE;
-
-        Vector pos = location.toVector();
-        double dx = Math.max(Math.max(bounds.getMinX() - pos.getX(), 0), pos.getX() - bounds.getMaxX());
-        double dy = Math.max(Math.max(bounds.getMinY() - pos.getY(), 0), pos.getY() - bounds.getMaxY());
-        double dz = Math.max(Math.max(bounds.getMinZ() - pos.getZ(), 0), pos.getZ() - bounds.getMaxZ());
-
-        return Math.sqrt(dx * dx + dy * dy + dz * dz);
-    }
-
     private double getAttackCooldown(LivingEntity mob) {
         // Different attack speeds for different mob types
         if (mob instanceof Ghast) return 5.0;
@@ -15,7 +15,8 @@ import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.util.BoundingBox;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
 
 public class BuildingProtectionSystem implements Listener {
     private final BuildingHealthSystem healthSystem;
@@ -34,21 +35,64 @@ public class BuildingProtectionSystem implements Listener {
 
     @EventHandler
     public void onBlockExplode(BlockExplodeEvent event) {
-        event.blockList().removeIf(block ->
-                isProtectedBlock(block.getLocation())
-        );
+        removeProtectedBlocks(event.blockList());
     }
 
     // 关键修改：血量大于0时保护
     private boolean isProtectedBlock(Location loc) {
         BuildingHealthData data = healthSystem.getBuildingAtLocation(loc);
-        if (data == null) return false;
+        return data != null && isProtecting(data);
+    }
+
+    private boolean isProtecting(BuildingHealthData data) {
+        return data.getHealth() > 0 && !data.isCollapsing();
+    }
+
+    // 爆炸的方块列表先整体计算一次范围，只取与之相交且受保护的建筑，再逐个方块比较整数坐标
+    private void removeProtectedBlocks(List<Block> blocks) {
+        if (blocks.isEmpty()) return;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (Block block : blocks) {
+            minX = Math.min(minX, block.getX());
+            minY = Math.min(minY, block.getY());
+            minZ = Math.min(minZ, block.getZ());
+            maxX = Math.max(maxX, block.getX());
+            maxY = Math.max(maxY, block.getY());
+            maxZ = Math.max(maxZ, block.getZ());
+        }
 
-        // 使用精确边界框而非粗略检测
-        BoundingBox exactBounds = data.getExactBoundingBox();
-        return exactBounds.contains(loc.toVector()) &&
-                data.getHealth() > 0 &&
-                !data.isCollapsing();
+        List<BuildingHealthData> candidates = new ArrayList<>();
+        healthSystem.getSpatialIndex().query(blocks.get(0).getWorld(),
+                new BoundingBox(minX, minY, minZ, maxX + 1, maxY + 1, maxZ + 1), candidates);
+        candidates.removeIf(data -> !isProtecting(data));
+        if (candidates.isEmpty()) return;
+
+        // 包围盒展开成数组，判断规则与 BoundingBox.contains 相同（最小值含、最大值不含）
+        double[] bounds = new double[candidates.size() * 6];
+        for (int i = 0; i < candidates.size(); i++) {
+            BoundingBox box = candidates.get(i).getBoundingBox();
+            bounds[i * 6] = box.getMinX();
+            bounds[i * 6 + 1] = box.getMinY();
+            bounds[i * 6 + 2] = box.getMinZ();
+            bounds[i * 6 + 3] = box.getMaxX();
+            bounds[i * 6 + 4] = box.getMaxY();
+            bounds[i * 6 + 5] = box.getMaxZ();
+        }
+
+        blocks.removeIf(block -> {
+            int x = block.getX();
+            int y = block.getY();
+            int z = block.getZ();
+            for (int i = 0; i < bounds.length; i += 6) {
+                if (x >= bounds[i] && y >= bounds[i + 1] && z >= bounds[i + 2]
+                        && x < bounds[i + 3] && y < bounds[i + 4] && z < bounds[i + 5]) {
+                    return true;
+                }
+            }
+            return false;
+        });
     }
 
     @EventHandler(priority = EventPriority.HIGH)
@@ -67,10 +111,8 @@ public class BuildingProtectionSystem implements Listener {
         // 血量大于0时才保护
         if (data.getHealth() > 0 && !data.isCollapsing()) {
             // 使用建筑边界框距离判断攻击位置
-            double distance = RotationUtil.calculateDistanceToBounds(
-                    player.getLocation(),
-                    data.getExactBoundingBox()
-            );
+            Location playerLoc = player.getLocation();
+            double distance = data.distanceToBounds(playerLoc.getX(), playerLoc.getY(), playerLoc.getZ());
 
             if (distance > 2.0) { // 2格外的攻击无效
                 player.sendActionBar(ChatColor.RED + "靠近建筑才能攻击！");
@@ -87,12 +129,6 @@ public class BuildingProtectionSystem implements Listener {
         }
 
         // 防止其他爆炸破坏建筑方块
-        Iterator<Block> iterator = event.blockList().iterator();
-        while (iterator.hasNext()) {
-            Block block = iterator.next();
-            if (isProtectedBlock(block.getLocation())) {
-                iterator.remove();
-            }
-        }
+        removeProtectedBlocks(event.blockList());
     }
 }
\ No newline at end of file
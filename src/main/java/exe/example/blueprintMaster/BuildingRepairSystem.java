@@ -14,7 +14,6 @@ import org.bukkit.potion.PotionEffect;
 import org.bukkit.potion.PotionEffectType;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitTask;
-import org.bukkit.util.BoundingBox;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -103,8 +102,7 @@ public class BuildingRepairSystem implements Listener {
             return;
         }
 
-        BoundingBox exactBounds = data.getExactBoundingBox();
-        if (!exactBounds.contains(block.getLocation().toVector())) {
+        if (!data.contains(block.getX(), block.getY(), block.getZ())) {
             player.sendActionBar(ChatColor.RED + "这不是建筑方块");
             return;
         }
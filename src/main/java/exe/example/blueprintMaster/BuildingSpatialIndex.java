@@ -0,0 +1,123 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.World;
+import org.bukkit.util.BoundingBox;
+
+import java.util.*;
+
+// 建筑空间索引：按世界和区块坐标登记建筑，建筑包围盒覆盖的每个区块都有一份引用
+// 点查询只检查所在区块内的建筑；只在主线程使用
+public class BuildingSpatialIndex {
+    private final Map<UUID, Map<Long, List<BuildingHealthData>>> worlds = new HashMap<>();
+
+    static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    static int chunkX(long key) {
+        return (int) (key >> 32);
+    }
+
+    static int chunkZ(long key) {
+        return (int) key;
+    }
+
+    public void add(BuildingHealthData data) {
+        World world = data.getBottomCenter().getWorld();
+        Map<Long, List<BuildingHealthData>> chunks = worlds.computeIfAbsent(world.getUID(), k -> new HashMap<>());
+        for (int cx = data.getMinChunkX(); cx <= data.getMaxChunkX(); cx++) {
+            for (int cz = data.getMinChunkZ(); cz <= data.getMaxChunkZ(); cz++) {
+                chunks.computeIfAbsent(chunkKey(cx, cz), k -> new ArrayList<>(2)).add(data);
+            }
+        }
+    }
+
+    public void remove(BuildingHealthData data) {
+        World world = data.getBottomCenter().getWorld();
+        Map<Long, List<BuildingHealthData>> chunks = worlds.get(world.getUID());
+        if (chunks == null) return;
+
+        for (int cx = data.getMinChunkX(); cx <= data.getMaxChunkX(); cx++) {
+            for (int cz = data.getMinChunkZ(); cz <= data.getMaxChunkZ(); cz++) {
+                long key = chunkKey(cx, cz);
+                List<BuildingHealthData> bucket = chunks.get(key);
+                if (bucket == null) continue;
+                bucket.remove(data);
+                if (bucket.isEmpty()) {
+                    chunks.remove(key);
+                }
+            }
+        }
+        if (chunks.isEmpty()) {
+            worlds.remove(world.getUID());
+        }
+    }
+
+    // 包含该点的建筑，没有时返回 null
+    public BuildingHealthData find(World world, double x, double y, double z) {
+        Map<Long, List<BuildingHealthData>> chunks = worlds.get(world.getUID());
+        if (chunks == null) return null;
+
+        List<BuildingHealthData> bucket = chunks.get(chunkKey(floorChunk(x), floorChunk(z)));
+        if (bucket == null) return null;
+        for (BuildingHealthData data : bucket) {
+            if (data.contains(x, y, z)) {
+                return data;
+            }
+        }
+        return null;
+    }
+
+    // 与 box 相交的建筑，结果加入 out
+    public void query(World world, BoundingBox box, List<BuildingHealthData> out) {
+        query(world, box.getMinX(), box.getMinY(), box.getMinZ(), box.getMaxX(), box.getMaxY(), box.getMaxZ(), out);
+    }
+
+    // 不分配对象的版本；跨多个区块的建筑只加入一次（查询范围内的建筑很少，直接在 out 中查重）
+    public void query(World world, double minX, double minY, double minZ,
+                      double maxX, double maxY, double maxZ, List<BuildingHealthData> out) {
+        Map<Long, List<BuildingHealthData>> chunks = worlds.get(world.getUID());
+        if (chunks == null) return;
+
+        int start = out.size();
+        for (int cx = floorChunk(minX); cx <= floorChunk(maxX); cx++) {
+            for (int cz = floorChunk(minZ); cz <= floorChunk(maxZ); cz++) {
+                List<BuildingHealthData> bucket = chunks.get(chunkKey(cx, cz));
+                if (bucket == null) continue;
+                for (BuildingHealthData data : bucket) {
+                    BoundingBox box = data.getBoundingBox();
+                    if (box.getMinX() < maxX && box.getMaxX() > minX
+                            && box.getMinY() < maxY && box.getMaxY() > minY
+                            && box.getMinZ() < maxZ && box.getMaxZ() > minZ
+                            && out.lastIndexOf(data) < start) {
+                        out.add(data);
+                    }
+                }
+            }
+        }
+    }
+
+    // 有建筑登记的区块各向外扩 expand 个区块，区块键加入 out（Set 自动去重）
+    public void coveredChunks(World world, int expand, Set<Long> out) {
+        Map<Long, List<BuildingHealthData>> chunks = worlds.get(world.getUID());
+        if (chunks == null) return;
+
+        for (long key : chunks.keySet()) {
+            int chunkX = chunkX(key);
+            int chunkZ = chunkZ(key);
+            for (int cx = chunkX - expand; cx <= chunkX + expand; cx++) {
+                for (int cz = chunkZ - expand; cz <= chunkZ + expand; cz++) {
+                    out.add(chunkKey(cx, cz));
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        worlds.clear();
+    }
+
+    private static int floorChunk(double coordinate) {
+        return (int) Math.floor(coordinate) >> 4;
+    }
+}
\ No newline at end of file
@@ -2,16 +2,20 @@ package exe.example.blueprintMaster;
 
 import org.bukkit.*;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.TileState;
 import org.bukkit.block.data.BlockData;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.util.io.BukkitObjectInputStream;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.*;
-import java.util.zip.GZIPInputStream;
 
 public class BuildingTemplate {
+    private static final BlockFace[] NEIGHBOUR_FACES = {
+            BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST, BlockFace.UP, BlockFace.DOWN
+    };
 
     private final String displayName;
     private final boolean explosionDamage;
@@ -20,15 +24,18 @@ public class BuildingTemplate {
     private final int height;
     private final int length;
     private final double buildSpeed;
-    private final byte[] structureData;
+    private final TemplateStructure structure; // 分段压缩的结构，按需解码
     private final TemplateManagerPlugin plugin;
     private final double baseHealth;
     private final double armor;
     private final double healthPerBlock;
     private final int totalBlocks;
+    private volatile PlacementOrder placementOrder; // 非空气格子，首次生成时计算，所有旋转共用
+    private volatile PlacementOrder clearOrder; // 空气格子，仅在清除障碍时使用
+    private volatile RotationTable rotationTable; // 调色板在四个旋转角度下的方块数据，首次生成时构建
 
     public BuildingTemplate(TemplateManagerPlugin plugin, String name, int width, int height, int length,
-                            double buildSpeed, byte[] structureData,
+                            double buildSpeed, TemplateStructure structure,
                             double baseHealth, double armor, double healthPerBlock, int totalBlocks,
                             boolean explosionDamage) {
         this.plugin = plugin;
@@ -37,7 +44,7 @@ public class BuildingTemplate {
         this.height = height;
         this.length = length;
         this.buildSpeed = buildSpeed;
-        this.structureData = structureData;
+        this.structure = structure;
         this.baseHealth = baseHealth;
         this.armor = armor;
         this.healthPerBlock = healthPerBlock;
@@ -55,24 +62,103 @@ public class BuildingTemplate {
     public int getHeight() { return height; }
     public int getLength() { return length; }
     public double getBuildSpeed() { return buildSpeed; }
-    public byte[] getStructureData() { return structureData; }
+    public TemplateStructure getStructure() { return structure; }
+
+    // 模板在内存中占用的大致字节数（压缩分段 + 调色板 + 解码分段上限 + 放置顺序）
+    public long getMemorySize() {
+        PlacementOrder order = placementOrder;
+        PlacementOrder clear = clearOrder;
+        RotationTable rotations = rotationTable;
+        return structure.getMemorySize()
+                + (order != null ? order.getMemorySize() : 0)
+                + (clear != null ? clear.getMemorySize() : 0)
+                + (rotations != null ? rotations.getMemorySize() : 0);
+    }
+
+    public RotationTable getRotationTable() {
+        RotationTable table = rotationTable;
+        if (table == null) {
+            synchronized (this) {
+                table = rotationTable;
+                if (table == null) {
+                    table = RotationTable.build(structure.getPalette());
+                    rotationTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    public PlacementOrder getPlacementOrder() {
+        PlacementOrder order = placementOrder;
+        if (order == null) {
+            synchronized (this) {
+                order = placementOrder;
+                if (order == null) {
+                    order = createOrder(false);
+                    placementOrder = order;
+                }
+            }
+        }
+        return order;
+    }
+
+    public PlacementOrder getClearOrder() {
+        PlacementOrder order = clearOrder;
+        if (order == null) {
+            synchronized (this) {
+                order = clearOrder;
+                if (order == null) {
+                    order = createOrder(true);
+                    clearOrder = order;
+                }
+            }
+        }
+        return order;
+    }
+
+    // 按调色板预先判断空气（air / cave_air / void_air），只收录指定类型的格子
+    private PlacementOrder createOrder(boolean air) {
+        String[] palette = structure.getPalette();
+        boolean[] isAir = new boolean[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            isAir[i] = BlockDataCache.get(palette[i]).getMaterial().isAir();
+        }
+        try {
+            return PlacementOrder.radial(structure, paletteIndex -> isAir[paletteIndex] == air);
+        } catch (IOException e) {
+            throw new IllegalStateException("分段数据损坏: " + e.getMessage(), e);
+        }
+    }
     public double getBaseHealth() { return baseHealth; }
     public double getArmor() { return armor; }
     public double getHealthPerBlock() { return healthPerBlock; }
     public int getTotalBlocks() { return totalBlocks; }
 
     public void generate(Player player, Location placementLoc, int rotation) {
-        // 计算底部中心点
-        Location bottomCenter = placementLoc.clone();
+        // 确定所有者ID（处理player为null的情况）
+        UUID ownerId = player != null ? player.getUniqueId() : UUID.fromString("00000000-0000-0000-0000-000000000000");
 
-        // 计算总血量
-        double totalHealth = baseHealth + healthPerBlock * totalBlocks;
+        start(UUID.randomUUID(), player, ownerId, placementLoc.clone(), rotation, 0, 0, null);
+    }
 
-        // 生成建筑ID
+    // 不绑定在线玩家的生成（批量放置使用）：所有者离线不会中止，结束时在主线程回调 onFinished
+    public UUID generate(UUID ownerId, Location placementLoc, int rotation, Runnable onFinished) {
         UUID buildingId = UUID.randomUUID();
+        start(buildingId, null, ownerId, placementLoc.clone(), rotation, 0, 0, onFinished);
+        return buildingId;
+    }
 
-        // 确定所有者ID（处理player为null的情况）
-        UUID ownerId = player != null ? player.getUniqueId() : UUID.fromString("00000000-0000-0000-0000-000000000000");
+    // 从检查点继续生成（服务器启动时调用，所有者可能不在线）
+    public void resume(UUID buildingId, UUID ownerId, Location bottomCenter, int rotation,
+                       int clearPosition, int position) {
+        start(buildingId, null, ownerId, bottomCenter, rotation, clearPosition, position, null);
+    }
+
+    private void start(UUID buildingId, Player player, UUID ownerId, Location bottomCenter, int rotation,
+                       int clearPosition, int position, Runnable onFinished) {
+        // 计算总血量
+        double totalHealth = baseHealth + healthPerBlock * totalBlocks;
 
         // 注册建筑（主线程）
         Bukkit.getScheduler().runTask(plugin, () -> {
@@ -95,172 +181,393 @@ public class BuildingTemplate {
         // 异步加载方块数据
         Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
             try {
-                List<String> blockDataList = loadBlockDataSync();
-                if (blockDataList == null || blockDataList.isEmpty()) {
+                if (structure.size() == 0) {
                     if (player != null) player.sendMessage(ChatColor.RED + "模板数据加载失败");
+                    if (onFinished != null) Bukkit.getScheduler().runTask(plugin, onFinished);
                     return;
                 }
 
                 BuildingGeneratorTask task = new BuildingGeneratorTask(
                         buildingId,
                         player,  // 可为null
+                        ownerId,
                         bottomCenter,
-                        blockDataList,
+                        getPlacementOrder(),
+                        getRotationTable(),
+                        plugin.getConfig().getBoolean("generation.clear_obstructions", true) ? getClearOrder() : null,
                         width, height, length,
-                        blockDataList.size(),
                         name,
                         rotation,
-                        this.buildSpeed
+                        this.buildSpeed,
+                        plugin.getUndoManager().open(buildingId, ownerId, bottomCenter.getWorld(), name),
+                        onFinished
                 );
-
-                double secondsPerBlock = buildSpeed / blockDataList.size();
-                long ticksPerBlock = (long) (secondsPerBlock * 20);
-                task.runTaskTimer(plugin, 0, Math.max(1, ticksPerBlock));
+                task.restore(clearPosition, position);
+                plugin.getGenerationController().track(task);
+
+                // 先异步加载覆盖的区块并加票据，全部就绪后再交给全局调度器，避免放置时同步加载区块
+                int[] bounds = task.getBounds();
+                ChunkPreloader.load(plugin, bottomCenter.getWorld(), bounds[0], bounds[1], bounds[2], bounds[3], chunks -> {
+                    if (chunks == null) {
+                        if (player != null) player.sendMessage(ChatColor.RED + "加载建筑所在区块失败");
+                        plugin.getHealthSystem().completelyRemoveBuilding(buildingId);
+                        task.finish();
+                        return;
+                    }
+                    task.attachChunks(chunks);
+                    // 等待区块期间已被取消
+                    if (task.isFinished()) {
+                        chunks.release();
+                        return;
+                    }
+                    plugin.getPlacementScheduler().submit(task);
+                });
             } catch (Exception e) {
                 if (player != null) player.sendMessage(ChatColor.RED + "生成建筑时发生错误");
                 plugin.getLogger().severe("生成建筑时出错: " + e.getMessage());
+                if (onFinished != null) Bukkit.getScheduler().runTask(plugin, onFinished);
             }
         });
     }
 
-    private List<String> loadBlockDataSync() {
-        if (structureData == null) {
-            plugin.getLogger().warning("模板数据为空: " + name);
-            return Collections.emptyList();
-        }
-
-        try (ByteArrayInputStream byteStream = new ByteArrayInputStream(structureData);
-             GZIPInputStream gzipStream = new GZIPInputStream(byteStream);
-             BukkitObjectInputStream in = new BukkitObjectInputStream(gzipStream)) {
-
-            in.readShort(); // version
-            in.readShort(); // width
-            in.readShort(); // height
-            in.readShort(); // length
-
-            return Arrays.asList((String[]) in.readObject());
-
-        } catch (Exception e) {
-            plugin.getLogger().severe("模板数据同步加载失败: " + e.getMessage());
-            return Collections.emptyList();
-        }
-    }
-
-    private class BuildingGeneratorTask extends BukkitRunnable {
+    private class BuildingGeneratorTask implements PlacementScheduler.Job, GenerationController.Build {
         private final UUID buildingId;
         private final Player player;
+        private final UUID ownerId;
         private final Location bottomCenter;
-        private final List<String> blockDataList;
+        private final PlacementOrder order;
+        private final PlacementOrder clearOrder; // 为 null 时不清除障碍
+        private final BlockData[] rotated; // 当前旋转角度下按调色板编号取方块数据
         private final int width;
         private final int height;
         private final int length;
-        private final int totalBlocks;
         private final String templateName;
         private final int rotation;
-        private final double buildSpeed;
-
-        private final List<List<BlockInfo>> groupedBlocks = new ArrayList<>();
-        private int currentGroupIndex = 0;
-
-        public BuildingGeneratorTask(UUID buildingId, Player player, Location bottomCenter,
-                                     List<String> blockDataList, int width, int height, int length,
-                                     int totalBlocks, String templateName, int rotation, double buildSpeed) {
+        private final int total;
+        private final double rate; // 按 build_speed 目标时长得出的每 tick 处理数
+        private final UndoJournal journal; // 记录被覆盖方块的原状态，可为 null
+        private final BlockBatch.WriteListener writeListener = this::written;
+        private final Runnable onFinished; // 可为 null
+        private ChunkPreloader chunks; // 区块票据，提交调度器前设置
+
+        private int[] boundaryCells = new int[64]; // 外表面上的非空气格子，收尾时触发邻居更新
+        private BlockData[] boundaryData = new BlockData[64]; // 对应格子放置的方块数据
+        private int boundaryCount = 0;
+        private int clearPosition = 0;
+        private int position = 0;
+        private int settleIndex = 0;
+        private int[] settleBounds; // 建筑占用的方块范围 {minX, minZ, maxX, maxZ}，收尾时计算
+        private double allowance = 0; // 本 tick 剩余可处理数，最多累积 1 秒的欠量
+        private volatile boolean finished = false;
+
+        // locate 的结果，避免为每个格子创建 Location
+        private int worldX, worldY, worldZ;
+
+        public BuildingGeneratorTask(UUID buildingId, Player player, UUID ownerId, Location bottomCenter,
+                                     PlacementOrder order, RotationTable rotations,
+                                     PlacementOrder clearOrder,
+                                     int width, int height, int length,
+                                     String templateName, int rotation, double buildSpeed,
+                                     UndoJournal journal, Runnable onFinished) {
             this.bottomCenter = bottomCenter;
             this.buildingId = buildingId;
             this.player = player;
-            this.blockDataList = blockDataList;
+            this.ownerId = ownerId;
+            this.order = order;
+            this.clearOrder = clearOrder;
+            this.rotated = rotations.forRotation(rotation);
             this.width = width;
             this.height = height;
             this.length = length;
-            this.totalBlocks = totalBlocks;
             this.templateName = templateName;
-            this.rotation = rotation;
-            this.buildSpeed = buildSpeed;
+            this.rotation = RotationUtil.normalizeRotation(rotation);
+            this.total = order.size() + (clearOrder != null ? clearOrder.size() : 0);
+            this.rate = GenerationController.plannedRate(total, buildSpeed);
+            this.journal = journal;
+            this.onFinished = onFinished;
+        }
 
-            prepareRadialGroups();
+        // 提交前设置检查点中的游标
+        void restore(int clearPosition, int position) {
+            if (clearOrder != null) {
+                this.clearPosition = Math.min(Math.max(0, clearPosition), clearOrder.size());
+            }
+            this.position = Math.min(Math.max(0, position), order.size());
         }
 
-        private void prepareRadialGroups() {
-            Map<Integer, List<BlockInfo>> distanceMap = new TreeMap<>();
-            for (int y = 0; y < height; y++) {
-                for (int z = 0; z < length; z++) {
-                    for (int x = 0; x < width; x++) {
-                        Location loc = RotationUtil.calculateBlockPosition(
-                                bottomCenter,
-                                x, y, z,
-                                width, length,
-                                rotation
-                        );
-                        double distance = loc.distance(bottomCenter);
-                        int distanceInt = (int) Math.round(distance);
-                        distanceMap.computeIfAbsent(distanceInt, k -> new ArrayList<>())
-                                .add(new BlockInfo(x, y, z, loc));
-                    }
-                }
+        void attachChunks(ChunkPreloader chunks) {
+            this.chunks = chunks;
+        }
+
+        // 旋转后占用的方块坐标范围 {minX, minZ, maxX, maxZ}，由底面四个角得出
+        int[] getBounds() {
+            int[] bounds = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+            for (int cell : new int[]{0, width - 1, width * (length - 1), width * length - 1}) {
+                locate(cell);
+                bounds[0] = Math.min(bounds[0], worldX);
+                bounds[1] = Math.min(bounds[1], worldZ);
+                bounds[2] = Math.max(bounds[2], worldX);
+                bounds[3] = Math.max(bounds[3], worldZ);
             }
-            groupedBlocks.addAll(distanceMap.values());
+            return bounds;
         }
 
         @Override
-        public void run() {
-            try {
-                // 检查玩家是否离线（新增null检查）
-                if (player != null && !player.isOnline()) {
-                    Bukkit.getScheduler().runTask(plugin, () -> {
-                        plugin.getHealthSystem().completelyRemoveBuilding(buildingId);
-                    });
-                    this.cancel();
-                    return;
-                }
+        public UUID getBuildingId() { return buildingId; }
 
-                // 检查建筑是否已被移除
-                if (!plugin.getHealthSystem().getBuildings().containsKey(buildingId)) {
-                    this.cancel();
-                    return;
+        @Override
+        public UUID getOwnerId() { return ownerId; }
+
+        // 从检查点恢复的任务没有发起玩家，进度显示给在线的所有者
+        @Override
+        public Player getPlayer() {
+            return player != null ? player : Bukkit.getPlayer(ownerId);
+        }
+
+        @Override
+        public String getTemplateName() { return templateName; }
+
+        @Override
+        public int getProcessed() {
+            return clearPosition + position;
+        }
+
+        @Override
+        public int getTotal() { return total; }
+
+        @Override
+        public double getPlannedRate() { return rate; }
+
+        // 停止放置，按撤销日志恢复被覆盖的方块后移除建筑
+        @Override
+        public void cancel() {
+            if (finished) return;
+            finished = true;
+            releaseChunks();
+            if (onFinished != null) onFinished.run();
+            plugin.getUndoManager().undo(buildingId, () -> {
+                plugin.getHealthSystem().completelyRemoveBuilding(buildingId);
+                Player owner = getPlayer();
+                if (owner != null) {
+                    owner.sendMessage(ChatColor.YELLOW + "已取消生成并恢复原有方块: " + templateName);
                 }
-                // 每次处理多个组（最多5组）
-                int groupsToProcess = Math.min(5, groupedBlocks.size() - currentGroupIndex);
+            });
+        }
 
-                for (int g = 0; g < groupsToProcess; g++) {
-                    List<BlockInfo> group = groupedBlocks.get(currentGroupIndex);
-                    for (BlockInfo blockInfo : group) {
-                        int idx = blockInfo.y * width * length + blockInfo.z * width + blockInfo.x;
-                        if (idx < 0 || idx >= blockDataList.size()) continue;
+        @Override
+        public void saveCheckpoint(ConfigurationSection section) {
+            section.set("template", templateName);
+            section.set("owner", ownerId.toString());
+            section.set("world", bottomCenter.getWorld().getName());
+            section.set("x", bottomCenter.getX());
+            section.set("y", bottomCenter.getY());
+            section.set("z", bottomCenter.getZ());
+            section.set("rotation", rotation);
+            section.set("clear_position", clearPosition);
+            section.set("position", position);
+        }
 
-                        String blockDataStr = blockDataList.get(idx);
-                        if (blockDataStr == null) continue;
+        // 与 RotationUtil.calculateBlockPosition 等价的整数运算：偏移用两倍坐标表示，旋转 90 度的倍数没有误差
+        private void locate(int cell) {
+            int x = cell % width;
+            int z = (cell / width) % length;
+            int y = cell / (width * length);
+            int dx = 2 * x - (width - 1);
+            int dz = 2 * z - (length - 1);
+
+            int rx, rz;
+            switch (rotation) {
+                case 90: rx = -dz; rz = dx; break;
+                case 180: rx = -dx; rz = -dz; break;
+                case 270: rx = dz; rz = -dx; break;
+                default: rx = dx; rz = dz;
+            }
 
-                        BlockData blockData = Bukkit.createBlockData(blockDataStr);
-                        BlockData rotatedData = RotationUtil.rotateBlockData(blockData, rotation);
+            worldX = (int) Math.floor(bottomCenter.getX() + rx / 2.0);
+            worldY = (int) Math.floor(bottomCenter.getY() + y);
+            worldZ = (int) Math.floor(bottomCenter.getZ() + rz / 2.0);
+        }
 
-                        Bukkit.getScheduler().runTask(plugin, () -> {
-                            Block block = blockInfo.location.getBlock();
-                            block.setBlockData(rotatedData);
-                        });
-                    }
-                    currentGroupIndex++;
+        @Override
+        public void startTick() {
+            if (finished) return;
+            allowance = Math.min(allowance + rate, Math.max(rate, 1) * 20);
+
+            // 检查玩家是否离线（新增null检查）
+            if (player != null && !player.isOnline()) {
+                plugin.getHealthSystem().completelyRemoveBuilding(buildingId);
+                finish();
+                return;
+            }
+
+            // 检查建筑是否已被移除
+            if (!plugin.getHealthSystem().getBuildings().containsKey(buildingId)) {
+                finish();
+            }
+        }
+
+        @Override
+        public int step(int limit) {
+            if (finished) return 0;
+
+            int placed = 0;
+            try {
+                boolean clearing = clearOrder != null && clearPosition < clearOrder.size();
+                if (clearing || position < order.size()) {
+                    // 按目标时长限速，收尾的邻居更新不计入
+                    int quota = (int) Math.min(limit, allowance);
+                    if (quota <= 0) return 0;
+                    placed = clearing ? clearObstructions(quota) : placeBlocks(quota);
+                    allowance -= placed;
+                } else {
+                    placed = settleBoundary(limit);
                 }
 
                 // 检查是否完成
-                if (currentGroupIndex >= groupedBlocks.size()) {
-                    Bukkit.getScheduler().runTask(plugin, () -> {
-                        // 仅在玩家不为null时发送消息
-                        if (player != null) {
-                            player.sendMessage(ChatColor.GREEN + "建筑生成完成: " + templateName);
-                            player.playSound(player.getLocation(), Sound.BLOCK_BEACON_ACTIVATE, 1.0f, 1.0f);
-                        }
-                        plugin.getHealthSystem().buildingCompleted(buildingId);
-                    });
-                    this.cancel();
+                if ((clearOrder == null || clearPosition >= clearOrder.size())
+                        && position >= order.size() && settleIndex >= boundaryCount) {
+                    // 仅在玩家不为null时发送消息
+                    if (player != null) {
+                        player.sendMessage(ChatColor.GREEN + "建筑生成完成: " + templateName);
+                        player.playSound(player.getLocation(), Sound.BLOCK_BEACON_ACTIVATE, 1.0f, 1.0f);
+                    }
+                    plugin.getHealthSystem().buildingCompleted(buildingId);
+                    finish();
                 }
             } catch (Exception e) {
-                // 仅在玩家不为null时发送错误消息
-                if (player != null) {
-                    player.sendActionBar(ChatColor.RED + "生成错误: " + e.getMessage());
+                abort(e);
+            }
+            return placed;
+        }
+
+        @Override
+        public void abort(Exception cause) {
+            if (finished) return;
+            // 仅在玩家不为null时发送错误消息
+            if (player != null) {
+                player.sendActionBar(ChatColor.RED + "生成错误: " + cause.getMessage());
+            }
+            plugin.getLogger().severe("生成建筑时出错: " + cause.getMessage());
+            finish();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        // 结束任务并关闭撤销日志（保留以便 /template undo）
+        private void finish() {
+            finished = true;
+            releaseChunks();
+            plugin.getUndoManager().close(buildingId);
+            if (onFinished != null) onFinished.run();
+        }
+
+        private void releaseChunks() {
+            if (chunks != null) chunks.release();
+        }
+
+        // 清除阶段：模板中是空气、世界中却有方块的位置先清空（已是空气的在写入时跳过）
+        private int clearObstructions(int limit) {
+            BlockBatch batch = new BlockBatch(limit);
+            BlockData air = BlockDataCache.get(TemplateStructure.AIR);
+            int processed = 0;
+            while (processed < limit && clearPosition < clearOrder.size()) {
+                int cell = clearOrder.getCell(clearPosition++);
+                processed++;
+                locate(cell);
+                batch.add(cell, worldX, worldY, worldZ, air);
+            }
+            batch.apply(bottomCenter.getWorld(), writeListener);
+            return processed;
+        }
+
+        // 按径向顺序由近到远，单次调用最多放置 limit 个方块
+        private int placeBlocks(int limit) {
+            BlockBatch batch = new BlockBatch(limit);
+            int processed = 0;
+            while (processed < limit && position < order.size()) {
+                // 共享缓存实例：setBlockData 只读取状态，不会保留引用
+                BlockData data = rotated[order.getPaletteIndex(position)];
+                int cell = order.getCell(position++);
+                processed++;
+
+                locate(cell);
+                batch.add(cell, worldX, worldY, worldZ, data);
+            }
+            batch.apply(bottomCenter.getWorld(), writeListener);
+            return processed;
+        }
+
+        // 记录原状态；写入的外表面非空气方块收尾时再触发邻居更新
+        private void written(int cell, int x, int y, int z, BlockData previous, BlockState previousTile,
+                             BlockData data) {
+            if (journal != null) {
+                journal.record(x, y, z, previous, previousTile);
+            }
+            if (isBoundary(cell) && !data.getMaterial().isAir()) {
+                addBoundary(cell, data);
+            }
+        }
+
+        private boolean isBoundary(int cell) {
+            int x = cell % width;
+            int z = (cell / width) % length;
+            int y = cell / (width * length);
+            return x == 0 || y == 0 || z == 0 || x == width - 1 || y == height - 1 || z == length - 1;
+        }
+
+        private void addBoundary(int cell, BlockData data) {
+            if (boundaryCount == boundaryCells.length) {
+                boundaryCells = Arrays.copyOf(boundaryCells, boundaryCount * 2);
+                boundaryData = Arrays.copyOf(boundaryData, boundaryCount * 2);
+            }
+            boundaryCells[boundaryCount] = cell;
+            boundaryData[boundaryCount++] = data;
+        }
+
+        // 收尾：外表面方块放置时没有物理更新，对挨着建筑外非空气方块的格子补发一次邻居通知
+        // 已放置的方块不重写；带方块实体的（箱子、告示牌等）跳过，避免快照写回
+        private int settleBoundary(int limit) {
+            World world = bottomCenter.getWorld();
+            if (settleBounds == null) {
+                settleBounds = getBounds();
+            }
+            int processed = 0;
+            while (processed < limit && settleIndex < boundaryCount) {
+                BlockData data = boundaryData[settleIndex];
+                int cell = boundaryCells[settleIndex++];
+                processed++;
+
+                locate(cell);
+                Block block = world.getBlockAt(worldX, worldY, worldZ);
+                if (!block.getBlockData().equals(data)) continue; // 放置后已被改动
+                if (!hasOutsideNeighbour(world)) continue;
+
+                // 新旧状态相同，update 不改变方块，只通知周围方块并更新它们的形状
+                BlockState state = block.getState(false);
+                if (state instanceof TileState) continue;
+                state.update(true, true);
+            }
+            return processed;
+        }
+
+        // 当前 locate 结果的六个相邻位置中是否有建筑范围外的非空气方块
+        private boolean hasOutsideNeighbour(World world) {
+            int minY = (int) Math.floor(bottomCenter.getY());
+            for (BlockFace face : NEIGHBOUR_FACES) {
+                int x = worldX + face.getModX();
+                int y = worldY + face.getModY();
+                int z = worldZ + face.getModZ();
+                boolean inside = x >= settleBounds[0] && x <= settleBounds[2]
+                        && z >= settleBounds[1] && z <= settleBounds[3]
+                        && y >= minY && y < minY + height;
+                if (!inside && !world.getBlockAt(x, y, z).getType().isAir()) {
+                    return true;
                 }
-                plugin.getLogger().severe("生成建筑时出错: " + e.getMessage());
-                this.cancel();
             }
+            return false;
         }
 
         private void drawRadialParticles(double radius, Particle particle) {
@@ -273,17 +580,5 @@ public class BuildingTemplate {
                 player.spawnParticle(particle, point, 1);
             }
         }
-
-        private static class BlockInfo {
-            final int x, y, z;
-            final Location location;
-
-            BlockInfo(int x, int y, int z, Location location) {
-                this.x = x;
-                this.y = y;
-                this.z = z;
-                this.location = location;
-            }
-        }
     }
 }
\ No newline at end of file
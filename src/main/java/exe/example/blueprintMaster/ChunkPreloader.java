@@ -0,0 +1,63 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// 区块预加载：异步加载一片区域覆盖的所有区块，并加插件区块票据防止任务进行中被卸载
+// 任务结束后必须调用 release 释放票据
+public class ChunkPreloader {
+    private final Plugin plugin;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private boolean released = false;
+
+    private ChunkPreloader(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    // 方块坐标范围（含），外扩 1 格以覆盖边界方块的邻居；onReady 在主线程调用，加载失败时参数为 null
+    public static void load(Plugin plugin, World world, int minX, int minZ, int maxX, int maxZ,
+                            Consumer<ChunkPreloader> onReady) {
+        List<CompletableFuture<Chunk>> futures = new ArrayList<>();
+        for (int cx = (minX - 1) >> 4; cx <= (maxX + 1) >> 4; cx++) {
+            for (int cz = (minZ - 1) >> 4; cz <= (maxZ + 1) >> 4; cz++) {
+                futures.add(world.getChunkAtAsync(cx, cz));
+            }
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((ignored, error) ->
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    if (error != null) {
+                        plugin.getLogger().warning("预加载区块失败: " + error.getMessage());
+                        onReady.accept(null);
+                        return;
+                    }
+
+                    ChunkPreloader preloader = new ChunkPreloader(plugin);
+                    for (CompletableFuture<Chunk> future : futures) {
+                        Chunk chunk = future.join();
+                        chunk.addPluginChunkTicket(plugin);
+                        preloader.chunks.add(chunk);
+                    }
+                    onReady.accept(preloader);
+                }));
+    }
+
+    public int getChunkCount() { return chunks.size(); }
+
+    // 主线程调用，可重复调用
+    public void release() {
+        if (released) return;
+        released = true;
+        for (Chunk chunk : chunks) {
+            chunk.removePluginChunkTicket(plugin);
+        }
+        chunks.clear();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,258 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.boss.BarColor;
+import org.bukkit.boss.BarStyle;
+import org.bukkit.boss.BossBar;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 建筑生成控制：按建筑 ID 跟踪进行中的生成任务，提供进度查询，并用 BossBar 向所有者显示进度
+// 进行中的任务定期写入 generation.yml 检查点，服务器重启后从检查点继续
+public class GenerationController extends BukkitRunnable {
+    public static final long UPDATE_PERIOD_TICKS = 10;
+
+    public interface Build {
+        UUID getBuildingId();
+
+        UUID getOwnerId();
+
+        Player getPlayer(); // 可为 null
+
+        String getTemplateName();
+
+        // 已处理 / 总计的格子数（清除阶段 + 放置阶段）
+        int getProcessed();
+
+        int getTotal();
+
+        // 按目标时长计划的每 tick 处理数，不限速时为无穷大
+        double getPlannedRate();
+
+        boolean isFinished();
+
+        // 停止生成并撤销已写入的方块，必须在主线程调用
+        void cancel();
+
+        // 写入模板名、原点、旋转和放置游标（主线程调用）
+        void saveCheckpoint(ConfigurationSection section);
+    }
+
+    private final TemplateManagerPlugin plugin;
+    private final File checkpointFile;
+    private final Map<UUID, Tracked> builds = new ConcurrentHashMap<>();
+    private long checkpointIntervalTicks;
+    private long ticksSinceCheckpoint = 0;
+    private boolean checkpointEmpty = true; // 上次写入的检查点是否为空
+
+    public GenerationController(TemplateManagerPlugin plugin) {
+        this.plugin = plugin;
+        this.checkpointFile = new File(plugin.getDataFolder(), "generation.yml");
+        reloadSettings();
+    }
+
+    public void reloadSettings() {
+        checkpointIntervalTicks = Math.max(UPDATE_PERIOD_TICKS,
+                (long) (plugin.getConfig().getDouble("generation.checkpoint_interval_seconds", 5.0) * 20));
+    }
+
+    // 可在任意线程调用
+    public void track(Build build) {
+        builds.put(build.getBuildingId(), new Tracked(build));
+    }
+
+    // 不在生成中时返回 null
+    public GenerationProgress getProgress(UUID buildingId) {
+        Tracked tracked = builds.get(buildingId);
+        return tracked != null ? tracked.snapshot() : null;
+    }
+
+    public Set<UUID> getActiveBuildings() {
+        return Collections.unmodifiableSet(builds.keySet());
+    }
+
+    // 所有者的进行中建筑（ownerId 为 null 时返回全部）
+    public List<UUID> getActiveBuildings(UUID ownerId) {
+        List<UUID> result = new ArrayList<>();
+        for (Tracked tracked : builds.values()) {
+            if (!tracked.build.isFinished() && (ownerId == null || ownerId.equals(tracked.build.getOwnerId()))) {
+                result.add(tracked.build.getBuildingId());
+            }
+        }
+        return result;
+    }
+
+    // 取消并回滚，必须在主线程调用
+    public boolean cancel(UUID buildingId) {
+        Tracked tracked = builds.get(buildingId);
+        if (tracked == null || tracked.build.isFinished()) return false;
+        tracked.build.cancel();
+        return true;
+    }
+
+    // 按目标时长计算每 tick 处理数：build_speed 为整座建筑的秒数，不大于 0 表示不限速
+    public static double plannedRate(int total, double buildSeconds) {
+        if (buildSeconds <= 0) return Double.POSITIVE_INFINITY;
+        return total / (buildSeconds * 20.0);
+    }
+
+    @Override
+    public void run() {
+        Iterator<Tracked> iterator = builds.values().iterator();
+        while (iterator.hasNext()) {
+            Tracked tracked = iterator.next();
+            if (tracked.build.isFinished()) {
+                tracked.hideBar();
+                iterator.remove();
+                continue;
+            }
+            tracked.updateBar();
+        }
+
+        ticksSinceCheckpoint += UPDATE_PERIOD_TICKS;
+        if (ticksSinceCheckpoint >= checkpointIntervalTicks && !(builds.isEmpty() && checkpointEmpty)) {
+            ticksSinceCheckpoint = 0;
+            String content = createCheckpoint();
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> writeCheckpoint(content));
+        }
+    }
+
+    // 关闭时同步写入检查点，未完成的任务在下次启动时继续
+    public void shutdown() {
+        writeCheckpoint(createCheckpoint());
+        for (Tracked tracked : builds.values()) {
+            tracked.hideBar();
+        }
+        builds.clear();
+    }
+
+    private String createCheckpoint() {
+        YamlConfiguration yaml = new YamlConfiguration();
+        for (Tracked tracked : builds.values()) {
+            if (tracked.build.isFinished()) continue;
+            tracked.build.saveCheckpoint(yaml.createSection(tracked.build.getBuildingId().toString()));
+        }
+        checkpointEmpty = yaml.getKeys(false).isEmpty();
+        return yaml.saveToString();
+    }
+
+    private synchronized void writeCheckpoint(String content) {
+        try {
+            Path tempPath = new File(plugin.getDataFolder(), "generation.yml.tmp").toPath();
+            Files.writeString(tempPath, content, StandardCharsets.UTF_8);
+            Files.move(tempPath, checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            plugin.getLogger().warning("无法写入生成检查点: " + e.getMessage());
+        }
+    }
+
+    // 启动时从检查点恢复未完成的生成任务
+    public void resumeCheckpoints() {
+        if (!checkpointFile.exists()) return;
+
+        YamlConfiguration yaml = YamlConfiguration.loadConfiguration(checkpointFile);
+        int resumed = 0;
+        for (String key : yaml.getKeys(false)) {
+            ConfigurationSection section = yaml.getConfigurationSection(key);
+            if (section == null) continue;
+            try {
+                UUID buildingId = UUID.fromString(key);
+                String templateName = section.getString("template", "");
+                World world = Bukkit.getWorld(section.getString("world", ""));
+                if (world == null || !plugin.getTemplateManager().templateExists(templateName)) {
+                    plugin.getLogger().warning("无法恢复生成任务 " + key + ": 世界或模板不存在");
+                    continue;
+                }
+                BuildingTemplate template = plugin.getTemplateManager().loadTemplate(templateName);
+                if (template == null) {
+                    plugin.getLogger().warning("无法恢复生成任务 " + key + ": 加载模板失败");
+                    continue;
+                }
+
+                Location bottomCenter = new Location(world,
+                        section.getDouble("x"), section.getDouble("y"), section.getDouble("z"));
+                template.resume(
+                        buildingId,
+                        UUID.fromString(section.getString("owner", "")),
+                        bottomCenter,
+                        section.getInt("rotation"),
+                        section.getInt("clear_position"),
+                        section.getInt("position")
+                );
+                resumed++;
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("生成检查点损坏: " + key + " - " + e.getMessage());
+            }
+        }
+        if (resumed > 0) {
+            plugin.getLogger().info("已从检查点恢复 " + resumed + " 个生成任务");
+        }
+    }
+
+    private static class Tracked {
+        private final Build build;
+        private final long startTime = System.currentTimeMillis();
+        private BossBar bar;
+
+        Tracked(Build build) {
+            this.build = build;
+        }
+
+        // 剩余时间优先按实际速度估算；尚无数据时按计划速度
+        GenerationProgress snapshot() {
+            int processed = build.getProcessed();
+            int total = build.getTotal();
+            int remaining = Math.max(0, total - processed);
+            long elapsed = System.currentTimeMillis() - startTime;
+
+            double eta;
+            if (processed > 0 && elapsed > 0) {
+                eta = remaining * (elapsed / 1000.0) / processed;
+            } else {
+                double rate = build.getPlannedRate();
+                eta = Double.isInfinite(rate) || rate <= 0 ? 0 : remaining / rate / 20.0;
+            }
+            return new GenerationProgress(build.getBuildingId(), build.getTemplateName(), processed, total, eta);
+        }
+
+        void updateBar() {
+            Player player = build.getPlayer();
+            if (player == null || !player.isOnline()) {
+                hideBar();
+                return;
+            }
+
+            GenerationProgress progress = snapshot();
+            String title = ChatColor.GREEN + "建造中: " + progress.getTemplateName() + " "
+                    + ChatColor.WHITE + (int) (progress.getFraction() * 100) + "% "
+                    + ChatColor.GRAY + "剩余 " + (int) Math.ceil(progress.getEtaSeconds()) + " 秒";
+            if (bar == null) {
+                bar = Bukkit.createBossBar(title, BarColor.GREEN, BarStyle.SEGMENTED_10);
+                bar.addPlayer(player);
+            }
+            bar.setTitle(title);
+            bar.setProgress(progress.getFraction());
+        }
+
+        void hideBar() {
+            if (bar != null) {
+                bar.removeAll();
+                bar = null;
+            }
+        }
+    }
+}
\ No newline at end of file
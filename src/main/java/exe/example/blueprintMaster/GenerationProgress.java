@@ -0,0 +1,31 @@
+package exe.example.blueprintMaster;
+
+import java.util.UUID;
+
+// 生成进度快照
+public class GenerationProgress {
+    private final UUID buildingId;
+    private final String templateName;
+    private final int placed;
+    private final int total;
+    private final double etaSeconds;
+
+    public GenerationProgress(UUID buildingId, String templateName, int placed, int total, double etaSeconds) {
+        this.buildingId = buildingId;
+        this.templateName = templateName;
+        this.placed = placed;
+        this.total = total;
+        this.etaSeconds = etaSeconds;
+    }
+
+    public UUID getBuildingId() { return buildingId; }
+    public String getTemplateName() { return templateName; }
+    public int getPlaced() { return placed; }
+    public int getTotal() { return total; }
+    public int getRemaining() { return Math.max(0, total - placed); }
+    public double getEtaSeconds() { return etaSeconds; }
+
+    public double getFraction() {
+        return total > 0 ? Math.min(1.0, (double) placed / total) : 1.0;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package exe.example.blueprintMaster;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+// 模板的径向放置顺序：按到底部中心的距离（四舍五入）分组，由近到远
+// 格子用结构索引（y*w*l + z*w + x）紧凑存储；距离与旋转无关，每个模板只需计算一次
+// 同时记录每个位置的调色板编号，放置时不再经过结构的分段缓存
+public class PlacementOrder {
+    private final int[] cells;
+    private final char[] states; // 调色板编号，全局调色板最多 65536 项
+    private final int[] groupStarts; // 每组在 cells 中的起点，末尾附加 cells.length
+
+    private PlacementOrder(int[] cells, char[] states, int[] groupStarts) {
+        this.cells = cells;
+        this.states = states;
+        this.groupStarts = groupStarts;
+    }
+
+    // 计数排序：同一距离内保持分段扫描顺序；只收录 include 接受的调色板编号
+    // 按分段扫描一次结构，每个格子只判断一次，收录的格子暂存后再按距离分组
+    public static PlacementOrder radial(TemplateStructure structure, IntPredicate include) throws IOException {
+        int width = structure.getWidth();
+        int length = structure.getLength();
+        int maxBucket = bucket(width - 1, structure.getHeight() - 1, length - 1, width, length);
+        int[] counts = new int[maxBucket + 2];
+
+        Scan scan = new Scan(include, counts, width, length);
+        structure.forEachCell(scan);
+        int size = scan.size;
+
+        int groups = 0;
+        for (int i = 1; i < counts.length; i++) {
+            if (counts[i] > 0) groups++;
+            counts[i] += counts[i - 1];
+        }
+
+        int[] groupStarts = new int[groups + 1];
+        int group = 0;
+        for (int i = 0; i <= maxBucket; i++) {
+            if (counts[i + 1] > counts[i]) {
+                groupStarts[group++] = counts[i];
+            }
+        }
+        groupStarts[groups] = size;
+
+        int[] cells = new int[size];
+        char[] states = new char[size];
+        for (int i = 0; i < size; i++) {
+            int index = scan.cells[i];
+            int x = index % width;
+            int z = (index / width) % length;
+            int y = index / (width * length);
+            int position = counts[bucket(x, y, z, width, length)]++;
+            cells[position] = index;
+            states[position] = scan.states[i];
+        }
+        return new PlacementOrder(cells, states, groupStarts);
+    }
+
+    // 收录的格子按扫描顺序暂存，同时统计每个距离的数量
+    private static final class Scan implements TemplateStructure.CellVisitor {
+        private final IntPredicate include;
+        private final int[] counts;
+        private final int width;
+        private final int length;
+        private int[] cells = new int[1024];
+        private char[] states = new char[1024];
+        private int size = 0;
+
+        Scan(IntPredicate include, int[] counts, int width, int length) {
+            this.include = include;
+            this.counts = counts;
+            this.width = width;
+            this.length = length;
+        }
+
+        @Override
+        public void visit(int x, int y, int z, int paletteIndex) {
+            if (!include.test(paletteIndex)) return;
+            if (size == cells.length) {
+                cells = Arrays.copyOf(cells, size * 2);
+                states = Arrays.copyOf(states, size * 2);
+            }
+            cells[size] = (y * length + z) * width + x;
+            states[size++] = (char) paletteIndex;
+            counts[bucket(x, y, z, width, length) + 1]++;
+        }
+    }
+
+    // 与 RotationUtil.calculateBlockPosition 的偏移一致：水平方向以 (尺寸-1)/2 为中心，用两倍坐标避免小数
+    private static int bucket(int x, int y, int z, int width, int length) {
+        long dx = 2L * x - (width - 1);
+        long dz = 2L * z - (length - 1);
+        return (int) Math.round(Math.sqrt(dx * dx + 4L * y * y + dz * dz) / 2.0);
+    }
+
+    public int size() { return cells.length; }
+    public int getGroupCount() { return groupStarts.length - 1; }
+    public int getGroupStart(int group) { return groupStarts[group]; }
+    public int getGroupEnd(int group) { return groupStarts[group + 1]; }
+    public int getCell(int position) { return cells[position]; }
+    public int getPaletteIndex(int position) { return states[position]; }
+
+    public long getMemorySize() {
+        return 4L * (cells.length + groupStarts.length) + 2L * states.length;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,114 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// 全局方块放置调度器：所有正在生成的建筑共享每 tick 的时间预算，在主线程轮流放置
+public class PlacementScheduler extends BukkitRunnable {
+    private static final int BATCH_SIZE = 64; // 每个建筑每轮最多放置的方块数
+
+    public interface Job {
+        // 每个 tick 开始时调用一次
+        void startTick();
+
+        // 在主线程放置最多 limit 个方块，返回实际处理数量；本 tick 没有可做的工作时返回 0
+        int step(int limit);
+
+        boolean isFinished();
+
+        // startTick 或 step 抛出异常后调用一次，之后任务被移出调度器；需要释放资源并触发完成回调
+        void abort(Exception cause);
+    }
+
+    private final TemplateManagerPlugin plugin;
+    private final Queue<Job> pending = new ConcurrentLinkedQueue<>();
+    private final Deque<Job> jobs = new ArrayDeque<>();
+
+    private long budgetNanos;
+    private long minBudgetNanos;
+    private double targetMspt;
+
+    public PlacementScheduler(TemplateManagerPlugin plugin) {
+        this.plugin = plugin;
+        reloadSettings();
+    }
+
+    public void reloadSettings() {
+        budgetNanos = (long) (plugin.getConfig().getDouble("generation.tick_budget_ms", 2.0) * 1_000_000);
+        minBudgetNanos = (long) (plugin.getConfig().getDouble("generation.min_tick_budget_ms", 0.5) * 1_000_000);
+        targetMspt = plugin.getConfig().getDouble("generation.target_mspt", 45.0);
+    }
+
+    // 可在任意线程调用
+    public void submit(Job job) {
+        pending.add(job);
+    }
+
+    public int getActiveJobCount() {
+        return jobs.size() + pending.size();
+    }
+
+    // 根据当前 MSPT 收缩预算：越接近目标值，留给放置的时间越少，但不低于最低预算
+    long currentBudgetNanos() {
+        double headroomMs = targetMspt - Bukkit.getAverageTickTime();
+        long headroom = (long) (headroomMs * 1_000_000);
+        return Math.max(minBudgetNanos, Math.min(budgetNanos, headroom));
+    }
+
+    @Override
+    public void run() {
+        Job added;
+        while ((added = pending.poll()) != null) {
+            jobs.addLast(added);
+        }
+        if (jobs.isEmpty()) return;
+
+        long deadline = System.nanoTime() + currentBudgetNanos();
+        Iterator<Job> iterator = jobs.iterator();
+        while (iterator.hasNext()) {
+            Job job = iterator.next();
+            try {
+                job.startTick();
+            } catch (Exception e) {
+                iterator.remove();
+                abort(job, e);
+            }
+        }
+
+        // 轮询所有建筑，队列顺序跨 tick 保留，保证公平
+        int idle = 0;
+        while (!jobs.isEmpty() && idle < jobs.size() && System.nanoTime() < deadline) {
+            Job job = jobs.pollFirst();
+            int processed;
+            try {
+                processed = job.step(BATCH_SIZE);
+            } catch (Exception e) {
+                abort(job, e);
+                continue;
+            }
+
+            if (job.isFinished()) {
+                idle = 0;
+                continue;
+            }
+            jobs.addLast(job);
+            idle = processed == 0 ? idle + 1 : 0;
+        }
+    }
+
+    // 出错的任务不再调度，由任务自己收尾；收尾再出错也不影响其他任务
+    private void abort(Job job, Exception cause) {
+        plugin.getLogger().severe("放置方块时出错: " + cause.getMessage());
+        try {
+            job.abort(cause);
+        } catch (Exception e) {
+            plugin.getLogger().severe("终止放置任务时出错: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,39 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.block.data.BlockData;
+
+// 调色板旋转表：每个调色板状态在四个旋转角度下的方块数据，每个模板只构建一次
+// 放置时按调色板编号直接取数组元素，不再查询字符串缓存；实例来自 BlockDataCache，不能修改
+public class RotationTable {
+    private final BlockData[][] variants; // [旋转角度 / 90][调色板编号]
+
+    private RotationTable(BlockData[][] variants) {
+        this.variants = variants;
+    }
+
+    public static RotationTable build(String[] palette) {
+        BlockData[][] variants = new BlockData[4][palette.length];
+        for (int slot = 0; slot < 4; slot++) {
+            for (int i = 0; i < palette.length; i++) {
+                variants[slot][i] = BlockDataCache.getRotated(palette[i], slot * 90);
+            }
+        }
+        return new RotationTable(variants);
+    }
+
+    // 某个旋转角度下以调色板编号为下标的数组
+    public BlockData[] forRotation(int rotation) {
+        return variants[RotationUtil.normalizeRotation(rotation) / 90];
+    }
+
+    public BlockData get(int paletteIndex, int rotation) {
+        return forRotation(rotation)[paletteIndex];
+    }
+
+    public int getPaletteSize() { return variants[0].length; }
+
+    // 只计引用数组，方块数据实例在全局缓存中共享
+    public long getMemorySize() {
+        return 4L * (16 + variants[0].length * 8L);
+    }
+}
\ No newline at end of file
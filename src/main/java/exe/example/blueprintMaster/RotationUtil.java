@@ -1,12 +1,16 @@
 package exe.example.blueprintMaster;
 
+import org.bukkit.Axis;
 import org.bukkit.Location;
 import org.bukkit.block.BlockFace;
-import org.bukkit.block.data.BlockData;
-import org.bukkit.block.data.Directional;
+import org.bukkit.block.data.*;
+import org.bukkit.block.data.type.RedstoneWire;
+import org.bukkit.block.data.type.Wall;
 import org.bukkit.util.BoundingBox;
 import org.bukkit.util.Vector;
 
+import java.util.Set;
+
 public class RotationUtil {
     public static int normalizeRotation(int rotation) {
         rotation = rotation % 360;
@@ -17,25 +21,7 @@ public class RotationUtil {
     public static double calculateExactDistanceToSurface(Location location, BuildingHealthData data) {
         if (data == null) return Double.MAX_VALUE;
 
-        BoundingBox exactBounds = data.getExactBoundingBox();
-        Vector pos = location.toVector();
-
-        // 计算到建筑六个面的最小距离
-        double minDistance = Double.MAX_VALUE;
-
-        // 检查前后两面 (X轴)
-        minDistance = Math.min(minDistance, Math.abs(pos.getX() - exactBounds.getMinX()));
-        minDistance = Math.min(minDistance, Math.abs(pos.getX() - exactBounds.getMaxX()));
-
-        // 检查左右两面 (Z轴)
-        minDistance = Math.min(minDistance, Math.abs(pos.getZ() - exactBounds.getMinZ()));
-        minDistance = Math.min(minDistance, Math.abs(pos.getZ() - exactBounds.getMaxZ()));
-
-        // 检查上下两面 (Y轴)
-        minDistance = Math.min(minDistance, Math.abs(pos.getY() - exactBounds.getMinY()));
-        minDistance = Math.min(minDistance, Math.abs(pos.getY() - exactBounds.getMaxY()));
-
-        return minDistance;
+        return data.distanceToSurface(location.getX(), location.getY(), location.getZ());
     }
     public static int getRotatedWidth(int rotation, int width, int length) {
         rotation = normalizeRotation(rotation);
@@ -105,9 +91,9 @@ public class RotationUtil {
         double minX = Double.MAX_VALUE;
         double minY = bottomCenter.getY();
         double minZ = Double.MAX_VALUE;
-        double maxX = Double.MIN_VALUE;
+        double maxX = -Double.MAX_VALUE;
         double maxY = minY + height;
-        double maxZ = Double.MIN_VALUE;
+        double maxZ = -Double.MAX_VALUE;
 
         for (Vector corner : corners) {
             minX = Math.min(minX, corner.getX());
@@ -174,45 +160,116 @@ public class RotationUtil {
 
         return Math.sqrt(dx * dx + dy * dy + dz * dz);
     }
+    // 水平方向按 16 方位顺时针排列，每 90 度前进 4 格；UP/DOWN 等不在环上的方向保持不变
+    private static final BlockFace[] HORIZONTAL_RING = {
+            BlockFace.NORTH, BlockFace.NORTH_NORTH_EAST, BlockFace.NORTH_EAST, BlockFace.EAST_NORTH_EAST,
+            BlockFace.EAST, BlockFace.EAST_SOUTH_EAST, BlockFace.SOUTH_EAST, BlockFace.SOUTH_SOUTH_EAST,
+            BlockFace.SOUTH, BlockFace.SOUTH_SOUTH_WEST, BlockFace.SOUTH_WEST, BlockFace.WEST_SOUTH_WEST,
+            BlockFace.WEST, BlockFace.WEST_NORTH_WEST, BlockFace.NORTH_WEST, BlockFace.NORTH_NORTH_WEST
+    };
+    private static final BlockFace[] CARDINAL = {BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST};
+
     public static BlockFace rotateFace(BlockFace originalFace, int rotation) {
         rotation = normalizeRotation(rotation);
-        BlockFace[] clockwise = {
-                BlockFace.NORTH,
-                BlockFace.EAST,
-                BlockFace.SOUTH,
-                BlockFace.WEST,
-                BlockFace.NORTH // 循环回起点
-        };
+        for (int i = 0; i < HORIZONTAL_RING.length; i++) {
+            if (HORIZONTAL_RING[i] == originalFace) {
+                return HORIZONTAL_RING[(i + rotation / 90 * 4) % HORIZONTAL_RING.length];
+            }
+        }
+        return originalFace;
+    }
 
-        int startIndex = -1;
-        for (int i = 0; i < 4; i++) {
-            if (clockwise[i] == originalFace) {
-                startIndex = i;
-                break;
+    // 返回旋转后的副本，不修改传入的对象；与 calculateBlockPosition 一样按顺时针旋转
+    // 楼梯的 shape 是相对朝向的，只需旋转 facing
+    public static BlockData rotateBlockData(BlockData data, int rotation) {
+        rotation = normalizeRotation(rotation);
+        if (rotation == 0) return data.clone();
+        BlockData result = data.clone();
+
+        if (result instanceof Directional) {
+            Directional directional = (Directional) result;
+            BlockFace face = rotateFace(directional.getFacing(), rotation);
+            if (directional.getFaces().contains(face)) {
+                directional.setFacing(face);
             }
         }
 
-        if (startIndex == -1) return originalFace;
+        if (result instanceof Rotatable) {
+            Rotatable rotatable = (Rotatable) result;
+            rotatable.setRotation(rotateFace(rotatable.getRotation(), rotation));
+        }
 
-        int steps = rotation / 90;
-        int newIndex = (startIndex + steps) % 4;
-        return clockwise[newIndex];
-    }
+        if (result instanceof Orientable && (rotation == 90 || rotation == 270)) {
+            Orientable orientable = (Orientable) result;
+            Axis axis = orientable.getAxis();
+            Axis swapped = axis == Axis.X ? Axis.Z : axis == Axis.Z ? Axis.X : axis;
+            if (orientable.getAxes().contains(swapped)) {
+                orientable.setAxis(swapped);
+            }
+        }
 
-    public static BlockData rotateBlockData(BlockData data, int rotation) {
-        if (data instanceof Directional) {
-            Directional directional = (Directional) data;
-            BlockFace face = directional.getFacing();
+        if (result instanceof MultipleFacing) {
+            MultipleFacing multipleFacing = (MultipleFacing) result;
+            Set<BlockFace> allowed = multipleFacing.getAllowedFaces();
+            Set<BlockFace> faces = multipleFacing.getFaces();
+            for (BlockFace face : allowed) {
+                multipleFacing.setFace(face, false);
+            }
+            for (BlockFace face : faces) {
+                BlockFace rotated = rotateFace(face, rotation);
+                multipleFacing.setFace(allowed.contains(rotated) ? rotated : face, true);
+            }
+        }
 
-            // 处理上下方向的方块（如楼梯）
-            if (face == BlockFace.UP || face == BlockFace.DOWN) {
-                return data; // 保持原方向
+        if (result instanceof Rail) {
+            Rail rail = (Rail) result;
+            Rail.Shape shape = rail.getShape();
+            for (int i = 0; i < rotation / 90; i++) {
+                shape = rotateRailShape(shape);
+            }
+            if (rail.getShapes().contains(shape)) {
+                rail.setShape(shape);
             }
+        }
+
+        if (result instanceof Wall) {
+            Wall wall = (Wall) result;
+            Wall.Height[] heights = new Wall.Height[CARDINAL.length];
+            for (int i = 0; i < CARDINAL.length; i++) {
+                heights[i] = wall.getHeight(CARDINAL[i]);
+            }
+            for (int i = 0; i < CARDINAL.length; i++) {
+                wall.setHeight(rotateFace(CARDINAL[i], rotation), heights[i]);
+            }
+        }
+
+        if (result instanceof RedstoneWire) {
+            RedstoneWire wire = (RedstoneWire) result;
+            RedstoneWire.Connection[] connections = new RedstoneWire.Connection[CARDINAL.length];
+            for (int i = 0; i < CARDINAL.length; i++) {
+                connections[i] = wire.getFace(CARDINAL[i]);
+            }
+            for (int i = 0; i < CARDINAL.length; i++) {
+                wire.setFace(rotateFace(CARDINAL[i], rotation), connections[i]);
+            }
+        }
+        return result;
+    }
 
-            BlockFace rotatedFace = rotateFace(face, rotation);
-            directional.setFacing(rotatedFace);
-            return directional;
+    // 顺时针旋转 90 度
+    private static Rail.Shape rotateRailShape(Rail.Shape shape) {
+        switch (shape) {
+            case NORTH_SOUTH: return Rail.Shape.EAST_WEST;
+            case EAST_WEST: return Rail.Shape.NORTH_SOUTH;
+            case ASCENDING_NORTH: return Rail.Shape.ASCENDING_EAST;
+            case ASCENDING_EAST: return Rail.Shape.ASCENDING_SOUTH;
+            case ASCENDING_SOUTH: return Rail.Shape.ASCENDING_WEST;
+            case ASCENDING_WEST: return Rail.Shape.ASCENDING_NORTH;
+            case NORTH_EAST: return Rail.Shape.SOUTH_EAST;
+            case SOUTH_EAST: return Rail.Shape.SOUTH_WEST;
+            case SOUTH_WEST: return Rail.Shape.NORTH_WEST;
+            case NORTH_WEST: return Rail.Shape.NORTH_EAST;
+            default: return shape;
         }
-        return data;
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// 选区的区块快照：在主线程一次性捕获，之后可在异步线程安全读取
+public class SelectionSnapshot {
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int width;
+    private final int height;
+    private final int length;
+    private final Map<Long, ChunkSnapshot> chunks;
+
+    private SelectionSnapshot(int minX, int minY, int minZ, int width, int height, int length,
+                              Map<Long, ChunkSnapshot> chunks) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        this.chunks = chunks;
+    }
+
+    // 必须在主线程调用
+    public static SelectionSnapshot capture(Selection selection) {
+        Location min = selection.getMinCorner();
+        World world = min.getWorld();
+        int minX = min.getBlockX();
+        int minY = min.getBlockY();
+        int minZ = min.getBlockZ();
+        int width = selection.getWidth();
+        int height = selection.getHeight();
+        int length = selection.getLength();
+
+        Map<Long, ChunkSnapshot> chunks = new HashMap<>();
+        for (int cx = minX >> 4; cx <= (minX + width - 1) >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= (minZ + length - 1) >> 4; cz++) {
+                chunks.put(chunkKey(cx, cz), world.getChunkAt(cx, cz).getChunkSnapshot(false, false, false));
+            }
+        }
+        return new SelectionSnapshot(minX, minY, minZ, width, height, length, chunks);
+    }
+
+    private static long chunkKey(int cx, int cz) {
+        return ((long) cx << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    // 使用选区内的相对坐标
+    public BlockData getBlockData(int x, int y, int z) {
+        int wx = minX + x;
+        int wz = minZ + z;
+        ChunkSnapshot chunk = chunks.get(chunkKey(wx >> 4, wz >> 4));
+        return chunk.getBlockData(wx & 15, minY + y, wz & 15);
+    }
+
+    public Material getType(int x, int y, int z) {
+        int wx = minX + x;
+        int wz = minZ + z;
+        ChunkSnapshot chunk = chunks.get(chunkKey(wx >> 4, wz >> 4));
+        return chunk.getBlockType(wx & 15, minY + y, wz & 15);
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getLength() { return length; }
+    public int getVolume() { return width * height * length; }
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package exe.example.blueprintMaster;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// 结构分段的压缩方式，编号写入 structure.bin 文件头
+public enum StructureCodec {
+    // 不压缩：解码最快，适合本地高速存储
+    RAW(0) {
+        @Override
+        public byte[] encode(byte[] data, int level) {
+            return data;
+        }
+
+        @Override
+        public byte[] decode(ByteBuffer input, int maxSize) throws IOException {
+            if (input.remaining() > maxSize) {
+                throw new IOException("分段数据过大: " + input.remaining());
+            }
+            byte[] output = new byte[input.remaining()];
+            input.get(output);
+            return output;
+        }
+    },
+
+    // zlib 格式的 Deflate，压缩级别 0-9
+    DEFLATE(1) {
+        @Override
+        public byte[] encode(byte[] data, int level) {
+            Deflater deflater = new Deflater(level);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                byte[] buffer = new byte[Math.max(64, data.length / 2)];
+                int size = 0;
+                while (!deflater.finished()) {
+                    if (size == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    size += deflater.deflate(buffer, size, buffer.length - size);
+                }
+                return Arrays.copyOf(buffer, size);
+            } finally {
+                deflater.end();
+            }
+        }
+
+        // 解压直到压缩流结束（同时校验 Adler-32）
+        @Override
+        public byte[] decode(ByteBuffer input, int maxSize) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(input);
+                byte[] output = new byte[maxSize];
+                int size = 0;
+                while (!inflater.finished()) {
+                    if (size == output.length) {
+                        throw new IOException("分段解压后过大");
+                    }
+                    int read = inflater.inflate(output, size, output.length - size);
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("分段数据不完整");
+                    }
+                    size += read;
+                }
+                if (inflater.getRemaining() != 0) {
+                    throw new IOException("分段数据长度不匹配");
+                }
+                return Arrays.copyOf(output, size);
+            } catch (DataFormatException e) {
+                throw new IOException("分段解压失败: " + e.getMessage());
+            } finally {
+                inflater.end();
+            }
+        }
+    };
+
+    private final int id;
+
+    StructureCodec(int id) {
+        this.id = id;
+    }
+
+    public int getId() { return id; }
+
+    public abstract byte[] encode(byte[] data, int level);
+
+    public abstract byte[] decode(ByteBuffer input, int maxSize) throws IOException;
+
+    public static StructureCodec fromId(int id) throws IOException {
+        for (StructureCodec codec : values()) {
+            if (codec.id == id) return codec;
+        }
+        throw new IOException("不支持的压缩方式: " + id);
+    }
+
+    // 配置中的名称（raw / deflate），无法识别时返回 null
+    public static StructureCodec fromName(String name) {
+        for (StructureCodec codec : values()) {
+            if (codec.name().equalsIgnoreCase(name)) return codec;
+        }
+        return null;
+    }
+}
\ No newline at end of file
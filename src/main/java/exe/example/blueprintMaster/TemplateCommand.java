@@ -13,15 +13,19 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.scheduler.BukkitRunnable;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 public class TemplateCommand implements CommandExecutor, TabCompleter {
     private final TemplateManagerPlugin plugin;
     private static final List<String> SUB_COMMANDS = Arrays.asList(
-            "reload", "repairtool", "save", "wand", "item", "health", "delete", "create"
+            "reload", "repairtool", "save", "wand", "item", "health", "delete", "create", "cache",
+            "benchmark", "cancel", "undo", "batch"
     );
 
     public TemplateCommand(TemplateManagerPlugin plugin) {
@@ -66,6 +70,21 @@ public class TemplateCommand implements CommandExecutor, TabCompleter {
             case "create":
                 handleCreate(player, args);
                 break;
+            case "cache":
+                handleCache(player);
+                break;
+            case "benchmark":
+                handleBenchmark(player, args);
+                break;
+            case "cancel":
+                handleCancel(player, args);
+                break;
+            case "undo":
+                handleUndo(player);
+                break;
+            case "batch":
+                handleBatch(player, args);
+                break;
             default:
                 player.sendMessage(ChatColor.RED + "未知子命令");
                 sendUsage(player);
@@ -94,7 +113,25 @@ public class TemplateCommand implements CommandExecutor, TabCompleter {
             }
             return matches;
         }
-        else if (args.length == 2 && "create".equalsIgnoreCase(args[0])) {
+        else if (args.length == 2 && "batch".equalsIgnoreCase(args[0])) {
+            List<String> matches = new ArrayList<>();
+            for (String mode : Arrays.asList("grid", "file")) {
+                if (mode.startsWith(args[1].toLowerCase())) {
+                    matches.add(mode);
+                }
+            }
+            return matches;
+        }
+        else if (args.length == 3 && "batch".equalsIgnoreCase(args[0]) && "grid".equalsIgnoreCase(args[1])) {
+            List<String> matches = new ArrayList<>();
+            for (String name : plugin.getTemplateManager().getTemplateNames()) {
+                if (name.toLowerCase().startsWith(args[2].toLowerCase())) {
+                    matches.add(name);
+                }
+            }
+            return matches;
+        }
+        else if (args.length == 2 && ("create".equalsIgnoreCase(args[0]) || "benchmark".equalsIgnoreCase(args[0]))) {
             List<String> templateNames = plugin.getTemplateManager().getTemplateNames();
             List<String> matches = new ArrayList<>();
             for (String name : templateNames) {
@@ -169,6 +206,185 @@ public class TemplateCommand implements CommandExecutor, TabCompleter {
         player.sendMessage(ChatColor.GREEN + "配置重载完成!");
     }
 
+    private void handleCache(Player player) {
+        if (!player.hasPermission("template.admin")) {
+            player.sendMessage(ChatColor.RED + "你没有执行此命令的权限!");
+            return;
+        }
+
+        TemplateManager templateManager = plugin.getTemplateManager();
+        player.sendMessage(ChatColor.GOLD + "=== 模板缓存 ===");
+        player.sendMessage(ChatColor.YELLOW + "已缓存模板: " + templateManager.getCachedTemplateCount() +
+                String.format("  占用: %.1f/%.1f MB",
+                        templateManager.getCachedBytes() / 1048576.0,
+                        templateManager.getMaxCacheBytes() / 1048576.0));
+        player.sendMessage(ChatColor.YELLOW + "命中/未命中: " +
+                templateManager.getCacheHits() + "/" + templateManager.getCacheMisses());
+
+        player.sendMessage(ChatColor.GOLD + "=== 方块数据缓存 ===");
+        player.sendMessage(ChatColor.YELLOW + "已解析状态: " + BlockDataCache.getParsedCount() +
+                "  已旋转状态: " + BlockDataCache.getRotatedCount());
+        player.sendMessage(ChatColor.YELLOW + "解析 命中/未命中: " +
+                BlockDataCache.getParseHits() + "/" + BlockDataCache.getParseMisses());
+        player.sendMessage(ChatColor.YELLOW + "旋转 命中/未命中: " +
+                BlockDataCache.getRotationHits() + "/" + BlockDataCache.getRotationMisses());
+    }
+
+    private void handleBenchmark(Player player, String[] args) {
+        if (!player.hasPermission("template.admin")) {
+            player.sendMessage(ChatColor.RED + "你没有执行此命令的权限!");
+            return;
+        }
+
+        TemplateManager templateManager = plugin.getTemplateManager();
+        List<String> names = args.length >= 2
+                ? Collections.singletonList(args[1])
+                : templateManager.getTemplateNames();
+        if (names.isEmpty()) {
+            player.sendMessage(ChatColor.RED + "没有可测试的模板");
+            return;
+        }
+
+        player.sendMessage(ChatColor.YELLOW + "正在测试 " + names.size() + " 个模板的压缩方式...");
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<String> lines = new ArrayList<>();
+            for (String name : names) {
+                try {
+                    lines.addAll(templateManager.benchmarkCodecs(name));
+                } catch (Exception e) {
+                    lines.add(ChatColor.RED + name + ": " + e.getMessage());
+                }
+            }
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                player.sendMessage(ChatColor.GOLD + "=== 压缩方式测试 ===");
+                for (String line : lines) {
+                    player.sendMessage(ChatColor.YELLOW + line);
+                    plugin.getLogger().info(ChatColor.stripColor(line));
+                }
+            });
+        });
+    }
+
+    // 取消自己正在生成的建筑并回滚；管理员可用 all 取消全部
+    private void handleCancel(Player player, String[] args) {
+        boolean all = args.length >= 2 && "all".equalsIgnoreCase(args[1]);
+        if (all && !player.hasPermission("template.admin")) {
+            player.sendMessage(ChatColor.RED + "你没有执行此命令的权限!");
+            return;
+        }
+
+        GenerationController controller = plugin.getGenerationController();
+        int cancelled = 0;
+        for (UUID buildingId : controller.getActiveBuildings(all ? null : player.getUniqueId())) {
+            if (controller.cancel(buildingId)) {
+                cancelled++;
+            }
+        }
+
+        if (cancelled == 0) {
+            player.sendMessage(ChatColor.RED + "没有正在生成的建筑");
+            return;
+        }
+        player.sendMessage(ChatColor.YELLOW + "已取消 " + cancelled + " 个生成任务，正在回滚已放置的方块...");
+    }
+
+    // 撤销自己最近一次生成：恢复被覆盖的方块并移除建筑，生成中的建筑先停止
+    private void handleUndo(Player player) {
+        UUID ownerId = player.getUniqueId();
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            UUID buildingId = plugin.getUndoManager().findLatest(ownerId);
+            plugin.getServer().getScheduler().runTask(plugin, () -> {
+                if (buildingId == null) {
+                    player.sendMessage(ChatColor.RED + "没有可撤销的建筑");
+                    return;
+                }
+                if (plugin.getGenerationController().cancel(buildingId)) {
+                    player.sendMessage(ChatColor.YELLOW + "已停止生成，正在恢复原有方块...");
+                    return;
+                }
+
+                boolean started = plugin.getUndoManager().undo(buildingId, () -> {
+                    plugin.getHealthSystem().completelyRemoveBuilding(buildingId);
+                    player.sendMessage(ChatColor.GREEN + "撤销完成");
+                });
+                player.sendMessage(started ? ChatColor.YELLOW + "正在撤销最近一次生成..."
+                        : ChatColor.RED + "最近一次生成正在撤销中，请稍候");
+            });
+        });
+    }
+
+    // 批量放置：grid 在脚下按网格排列同一模板，file 读取 batches/<文件名>.txt 中的放置列表
+    private void handleBatch(Player player, String[] args) {
+        if (!player.hasPermission("template.admin")) {
+            player.sendMessage(ChatColor.RED + "你没有执行此命令的权限!");
+            return;
+        }
+
+        if (args.length >= 6 && "grid".equalsIgnoreCase(args[1])) {
+            int rows, columns, spacing, rotation = 0;
+            try {
+                rows = Integer.parseInt(args[3]);
+                columns = Integer.parseInt(args[4]);
+                spacing = Integer.parseInt(args[5]);
+                if (args.length >= 7) {
+                    rotation = Integer.parseInt(args[6]);
+                }
+            } catch (NumberFormatException e) {
+                player.sendMessage(ChatColor.RED + "行数、列数、间距和角度必须是整数");
+                return;
+            }
+            if (rows <= 0 || columns <= 0 || spacing <= 0) {
+                player.sendMessage(ChatColor.RED + "行数、列数和间距必须大于0");
+                return;
+            }
+            if ((long) rows * columns > 10000) {
+                player.sendMessage(ChatColor.RED + "一次最多放置 10000 个建筑");
+                return;
+            }
+            if (!TemplateManager.isValidName(args[2])) {
+                player.sendMessage(ChatColor.RED + "模板名无效: " + args[2]);
+                return;
+            }
+
+            // 间距小于占地时相邻建筑重叠，后一个的清除阶段会拆掉前一个；列沿 X、行沿 Z，旋转可能交换宽长，取较大值
+            TemplateIndex.Entry info = plugin.getTemplateManager().getTemplateInfo(args[2]);
+            if (info == null) {
+                player.sendMessage(ChatColor.RED + "模板不存在或尚未索引: " + args[2]);
+                return;
+            }
+            int footprint = Math.max(info.getWidth(), info.getLength());
+            if (spacing < footprint) {
+                player.sendMessage(ChatColor.RED + "间距不能小于建筑占地（" + footprint + " 格）");
+                return;
+            }
+
+            Location origin = player.getLocation().getBlock().getLocation();
+            plugin.generateBatch(player, BatchPlacement.grid(args[2], origin, rows, columns, spacing, rotation));
+            return;
+        }
+
+        if (args.length >= 3 && "file".equalsIgnoreCase(args[1])) {
+            if (!TemplateManager.isValidName(args[2])) {
+                player.sendMessage(ChatColor.RED + "文件名无效: " + args[2]);
+                return;
+            }
+            File file = new File(plugin.getDataFolder(), "batches/" + args[2] + ".txt");
+            if (!file.exists()) {
+                player.sendMessage(ChatColor.RED + "放置列表不存在: " + file.getName());
+                return;
+            }
+            try {
+                plugin.generateBatch(player, BatchPlacement.readFile(file, player.getWorld()));
+            } catch (IOException e) {
+                player.sendMessage(ChatColor.RED + "读取放置列表失败: " + e.getMessage());
+            }
+            return;
+        }
+
+        player.sendMessage(ChatColor.RED + "用法: /template batch grid <模板> <行数> <列数> <间距> [角度]");
+        player.sendMessage(ChatColor.RED + "      /template batch file <文件名>");
+    }
+
     private void handleSave(Player player, String[] args) {
         if (args.length < 2) {
             player.sendMessage(ChatColor.RED + "用法: /template save <名称> [显示名称]");
@@ -208,9 +424,9 @@ public class TemplateCommand implements CommandExecutor, TabCompleter {
             return;
         }
 
-        BuildingTemplate template = plugin.getTemplateManager().loadTemplate(templateName);
+        TemplateIndex.Entry template = plugin.getTemplateManager().getTemplateInfo(templateName);
         if (template == null) {
-            player.sendMessage(ChatColor.RED + "加载模板失败");
+            player.sendMessage(ChatColor.RED + "模板尚未索引，请稍后重试: " + templateName);
             return;
         }
 
@@ -221,7 +437,7 @@ public class TemplateCommand implements CommandExecutor, TabCompleter {
                 template.getBaseHealth(),
                 template.getArmor(),
                 template.getHealthPerBlock(),
-                template.getDisplayName()
+                template.getName()
         );
 
         player.getInventory().addItem(templateItem);
@@ -344,7 +560,12 @@ public class TemplateCommand implements CommandExecutor, TabCompleter {
         player.sendMessage(ChatColor.YELLOW + "/template delete - 删除附近建筑");
         player.sendMessage(ChatColor.YELLOW + "/template repairtool - 获取建筑维修工具");
         player.sendMessage(ChatColor.YELLOW + "/template reload - 重载插件配置 (管理员)");
+        player.sendMessage(ChatColor.YELLOW + "/template cache - 查看缓存统计 (管理员)");
+        player.sendMessage(ChatColor.YELLOW + "/template benchmark [模板] - 测试各压缩方式 (管理员)");
         player.sendMessage(ChatColor.YELLOW + "/template create <模板> <x> <y> <z> [角度] - 在指定位置生成建筑");
+        player.sendMessage(ChatColor.YELLOW + "/template cancel [all] - 取消正在生成的建筑并回滚");
+        player.sendMessage(ChatColor.YELLOW + "/template undo - 撤销最近一次生成，恢复原有方块");
+        player.sendMessage(ChatColor.YELLOW + "/template batch grid|file ... - 批量放置建筑 (管理员)");
     }
 
     private void giveSelectionWand(Player player) {
@@ -0,0 +1,258 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.Bukkit;
+import org.hjson.JsonObject;
+import org.hjson.JsonValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 模板元数据索引（templates/.index.json），尺寸和血量查询无需读取 structure.bin
+// 模板名不能以 . 开头，索引文件不会与模板目录重名
+public class TemplateIndex {
+    private final TemplateManagerPlugin plugin;
+    private final File templatesDir;
+    private final File indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet(); // 正在异步读取的未索引模板
+
+    public TemplateIndex(TemplateManagerPlugin plugin) {
+        this.plugin = plugin;
+        this.templatesDir = new File(plugin.getDataFolder(), "templates");
+        this.indexFile = new File(templatesDir, ".index.json");
+    }
+
+    // 启动时增量重建：文件未变化的条目直接复用，变化的条目重新读取并校验
+    public void rebuild() {
+        // 旧版本的索引文件（templates/index）不再使用，按新位置重新生成
+        File legacyIndex = new File(templatesDir, "index");
+        if (legacyIndex.isFile() && !legacyIndex.delete()) {
+            plugin.getLogger().warning("无法删除旧模板索引: " + legacyIndex.getAbsolutePath());
+        }
+
+        Map<String, Entry> previous = readIndexFile();
+        entries.clear();
+        boolean changed = false;
+
+        File[] dirs = templatesDir.listFiles(File::isDirectory);
+        if (dirs != null) {
+            for (File dir : dirs) {
+                String name = dir.getName();
+                Entry old = previous.remove(name);
+                if (old != null && old.isUpToDate(dir)) {
+                    entries.put(name, old);
+                    continue;
+                }
+
+                Entry entry = readEntry(dir, true);
+                if (entry != null) {
+                    entries.put(name, entry);
+                }
+                changed = true;
+            }
+        }
+
+        if (changed || !previous.isEmpty()) {
+            save();
+        }
+        plugin.getLogger().info("模板索引已加载: " + entries.size() + " 个模板");
+    }
+
+    // 保存模板后更新对应条目（校验和已在保存时验证）
+    public void update(String name) {
+        Entry entry = readEntry(new File(templatesDir, name), false);
+        if (entry != null) {
+            entries.put(name, entry);
+        } else if (entries.remove(name) == null) {
+            return;
+        }
+        save();
+    }
+
+    public void remove(String name) {
+        if (entries.remove(name) != null) {
+            save();
+        }
+    }
+
+    // 只查内存；未索引的模板（启动后手动放入的）在异步线程读取并校验，本次返回 null，之后的查询可以命中
+    public Entry get(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null && !name.isEmpty() && !name.startsWith(".") && refreshing.add(name)) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                try {
+                    Entry loaded = readEntry(new File(templatesDir, name), true);
+                    if (loaded != null) {
+                        entries.put(name, loaded);
+                        save();
+                    }
+                } finally {
+                    refreshing.remove(name);
+                }
+            });
+        }
+        return entry;
+    }
+
+    public List<String> getNames() {
+        List<String> names = new ArrayList<>(entries.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    private Entry readEntry(File dir, boolean verifyChecksum) {
+        File configFile = new File(dir, "data.conf");
+        File structureFile = new File(dir, "structure.bin");
+        if (!configFile.exists() || !structureFile.exists() || structureFile.length() == 0) {
+            return null;
+        }
+
+        try {
+            JsonObject config = JsonValue.readJSON(
+                    Files.readString(configFile.toPath(), StandardCharsets.UTF_8)).asObject();
+            long checksum = config.get("checksum").asLong();
+
+            if (verifyChecksum) {
+                long actual = plugin.calculateChecksum(structureFile.toPath());
+                if (actual != checksum) {
+                    plugin.getLogger().warning("模板校验和不匹配，未加入索引: " + dir.getName());
+                    return null;
+                }
+            }
+
+            JsonObject dimensions = config.get("dimensions").asObject();
+            return new Entry(
+                    dir.getName(),
+                    dimensions.get("width").asInt(),
+                    dimensions.get("height").asInt(),
+                    dimensions.get("length").asInt(),
+                    config.get("base_health").asDouble(),
+                    config.get("armor").asDouble(),
+                    config.get("health_per_block").asDouble(),
+                    config.get("block_info").asObject().get("total_blocks").asInt(),
+                    checksum,
+                    configFile.lastModified(),
+                    structureFile.lastModified(),
+                    structureFile.length()
+            );
+        } catch (Exception e) {
+            plugin.getLogger().warning("读取模板元数据失败: " + dir.getName() + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<String, Entry> readIndexFile() {
+        Map<String, Entry> result = new HashMap<>();
+        if (!indexFile.exists()) return result;
+
+        try {
+            JsonObject root = JsonValue.readJSON(
+                    Files.readString(indexFile.toPath(), StandardCharsets.UTF_8)).asObject();
+            for (JsonObject.Member member : root) {
+                JsonObject obj = member.getValue().asObject();
+                result.put(member.getName(), new Entry(
+                        member.getName(),
+                        obj.get("width").asInt(),
+                        obj.get("height").asInt(),
+                        obj.get("length").asInt(),
+                        obj.get("base_health").asDouble(),
+                        obj.get("armor").asDouble(),
+                        obj.get("health_per_block").asDouble(),
+                        obj.get("total_blocks").asInt(),
+                        obj.get("checksum").asLong(),
+                        obj.get("config_modified").asLong(),
+                        obj.get("structure_modified").asLong(),
+                        obj.get("structure_size").asLong()
+                ));
+            }
+        } catch (Exception e) {
+            plugin.getLogger().warning("模板索引损坏，将重新生成: " + e.getMessage());
+            result.clear();
+        }
+        return result;
+    }
+
+    private synchronized void save() {
+        JsonObject root = new JsonObject();
+        for (String name : getNames()) {
+            Entry entry = entries.get(name);
+            if (entry == null) continue;
+            root.add(name, new JsonObject()
+                    .add("width", entry.width)
+                    .add("height", entry.height)
+                    .add("length", entry.length)
+                    .add("base_health", entry.baseHealth)
+                    .add("armor", entry.armor)
+                    .add("health_per_block", entry.healthPerBlock)
+                    .add("total_blocks", entry.totalBlocks)
+                    .add("checksum", entry.checksum)
+                    .add("config_modified", entry.configModified)
+                    .add("structure_modified", entry.structureModified)
+                    .add("structure_size", entry.structureSize));
+        }
+
+        if (!templatesDir.exists() && !templatesDir.mkdirs()) return;
+        try {
+            Path tempPath = new File(templatesDir, ".index.json.tmp").toPath();
+            Files.writeString(tempPath, root.toString(), StandardCharsets.UTF_8);
+            Files.move(tempPath, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            plugin.getLogger().warning("无法写入模板索引: " + e.getMessage());
+        }
+    }
+
+    public static class Entry {
+        private final String name;
+        private final int width;
+        private final int height;
+        private final int length;
+        private final double baseHealth;
+        private final double armor;
+        private final double healthPerBlock;
+        private final int totalBlocks;
+        private final long checksum;
+        private final long configModified;
+        private final long structureModified;
+        private final long structureSize;
+
+        Entry(String name, int width, int height, int length, double baseHealth, double armor,
+              double healthPerBlock, int totalBlocks, long checksum,
+              long configModified, long structureModified, long structureSize) {
+            this.name = name;
+            this.width = width;
+            this.height = height;
+            this.length = length;
+            this.baseHealth = baseHealth;
+            this.armor = armor;
+            this.healthPerBlock = healthPerBlock;
+            this.totalBlocks = totalBlocks;
+            this.checksum = checksum;
+            this.configModified = configModified;
+            this.structureModified = structureModified;
+            this.structureSize = structureSize;
+        }
+
+        boolean isUpToDate(File dir) {
+            File structureFile = new File(dir, "structure.bin");
+            return new File(dir, "data.conf").lastModified() == configModified
+                    && structureFile.lastModified() == structureModified
+                    && structureFile.length() == structureSize;
+        }
+
+        public String getName() { return name; }
+        public int getWidth() { return width; }
+        public int getHeight() { return height; }
+        public int getLength() { return length; }
+        public double getBaseHealth() { return baseHealth; }
+        public double getArmor() { return armor; }
+        public double getHealthPerBlock() { return healthPerBlock; }
+        public int getTotalBlocks() { return totalBlocks; }
+        public long getChecksum() { return checksum; }
+    }
+}
\ No newline at end of file
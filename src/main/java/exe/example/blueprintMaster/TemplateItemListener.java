@@ -167,7 +167,7 @@ public class TemplateItemListener implements Listener {
         player.sendMessage(ChatColor.GRAY + "轮廓位置: X=" + bottomCenter.getX() +
                 " Y=" + bottomCenter.getY() + " Z=" + bottomCenter.getZ());
 
-        BuildingTemplate template = plugin.getTemplateManager().loadTemplate(templateName);
+        TemplateIndex.Entry template = plugin.getTemplateManager().getTemplateInfo(templateName);
         if (template == null) {
             player.sendActionBar(ChatColor.RED + "加载模板失败: " + templateName);
             return;
@@ -219,13 +219,13 @@ public class TemplateItemListener implements Listener {
     }
     // 辅助方法：获取模板的原始宽度
     private int getTemplateWidth(String templateName) {
-        BuildingTemplate template = plugin.getTemplateManager().loadTemplate(templateName);
+        TemplateIndex.Entry template = plugin.getTemplateManager().getTemplateInfo(templateName);
         return template != null ? template.getWidth() : 0;
     }
 
     // 辅助方法：获取模板的原始长度
     private int getTemplateLength(String templateName) {
-        BuildingTemplate template = plugin.getTemplateManager().loadTemplate(templateName);
+        TemplateIndex.Entry template = plugin.getTemplateManager().getTemplateInfo(templateName);
         return template != null ? template.getLength() : 0;
     }
 
@@ -422,7 +422,7 @@ public class TemplateItemListener implements Listener {
 
     private Location calculateAttachLocation(Player player, OutlineData baseOutline, Vector attachDirection, int newRotation) {
         String templateName = TemplateItem.getTemplateName(player.getInventory().getItemInMainHand());
-        BuildingTemplate newTemplate = plugin.getTemplateManager().loadTemplate(templateName);
+        TemplateIndex.Entry newTemplate = plugin.getTemplateManager().getTemplateInfo(templateName);
         if (newTemplate == null) return null;
 
         int baseRotation = baseOutline.getRotation();
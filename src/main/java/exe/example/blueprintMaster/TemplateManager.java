@@ -2,22 +2,16 @@ package exe.example.blueprintMaster;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.Location;
 import org.bukkit.Material;
-import org.bukkit.block.Block;
 import org.bukkit.block.data.BlockData;
-import org.bukkit.block.data.Directional;
 import org.bukkit.entity.Player;
-import org.bukkit.util.io.BukkitObjectInputStream;
-import org.bukkit.util.io.BukkitObjectOutputStream;
 import org.hjson.JsonObject;
 import org.hjson.JsonValue;
 import org.hjson.ParseException;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -26,16 +20,41 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 
 public class TemplateManager {
-    private static final int MAX_VOLUME = 10000;
     private final TemplateManagerPlugin plugin;
     private final Map<UUID, String> pendingConfirmation = new HashMap<>();
+    private final Set<String> savingTemplates = ConcurrentHashMap.newKeySet();
+    private final TemplateIndex index;
+
+    // 已加载模板的LRU缓存，按解码后的总字节数限制
+    private final Map<String, CachedTemplate> templateCache = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxCacheBytes;
+    private final long mmapMinBytes;
+    private final StructureCodec codec;
+    private final int compressionLevel;
+    private long cachedBytes;
+    private long cacheHits;
+    private long cacheMisses;
 
     public TemplateManager(TemplateManagerPlugin plugin) {
         this.plugin = plugin;
+        this.maxCacheBytes = plugin.getConfig().getLong("template_manager.cache_max_mb", 64) * 1024 * 1024;
+        this.mmapMinBytes = plugin.getConfig().getLong("template_manager.mmap_min_kb", 256) * 1024;
+        String codecName = plugin.getConfig().getString("template_manager.codec", "deflate");
+        StructureCodec configured = StructureCodec.fromName(codecName);
+        if (configured == null) {
+            plugin.getLogger().warning("未知的压缩方式: " + codecName + "，使用 deflate");
+            configured = StructureCodec.DEFLATE;
+        }
+        this.codec = configured;
+        this.compressionLevel = Math.max(1, Math.min(9, plugin.getConfig().getInt(
+                "template_manager.compression_level", TemplateStructure.DEFAULT_COMPRESSION_LEVEL)));
+        this.index = new TemplateIndex(plugin);
+        index.rebuild();
     }
 
     public void saveTemplate(Player player, String name, String displayName, boolean explosionDamage) {
@@ -57,29 +76,77 @@ public class TemplateManager {
             return;
         }
 
+        String templateName = normalizedName;
+        if (!savingTemplates.add(templateName)) {
+            player.sendMessage(ChatColor.RED + "模板正在保存中，请稍候: " + templateName);
+            return;
+        }
+
+        // 主线程只负责捕获区块快照，其余工作交给异步线程
+        SelectionSnapshot snapshot;
         try {
-            saveTemplateData(player, normalizedName, displayName, explosionDamage);
-            pendingConfirmation.remove(playerId);
+            snapshot = captureSelection(player);
         } catch (TemplateSaveException e) {
+            savingTemplates.remove(templateName);
             player.sendMessage(ChatColor.RED + e.getMessage());
             plugin.getLogger().severe("保存失败: " + e.getDetailedMessage());
+            return;
         }
+
+        String creator = player.getName();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            TemplateSaveException failure = null;
+            try {
+                saveTemplateData(creator, templateName, displayName, snapshot, explosionDamage);
+            } catch (TemplateSaveException e) {
+                failure = e;
+                plugin.getLogger().severe("保存失败: " + e.getDetailedMessage());
+            } finally {
+                savingTemplates.remove(templateName);
+            }
+
+            TemplateSaveException result = failure;
+            Bukkit.getScheduler().runTask(plugin, () -> completeSave(playerId, templateName, snapshot, result));
+        });
     }
 
-    private void saveTemplateData(Player player, String name, String displayName, boolean explosionDamage) throws TemplateSaveException {
-        UUID playerId = player.getUniqueId();
-        Selection selection = plugin.getSelection(playerId);
+    // 保存完成回调（主线程）
+    private void completeSave(UUID playerId, String name, SelectionSnapshot snapshot, TemplateSaveException failure) {
+        Player player = Bukkit.getPlayer(playerId);
+        if (failure != null) {
+            if (player != null) player.sendMessage(ChatColor.RED + failure.getMessage());
+            return;
+        }
+
+        pendingConfirmation.remove(playerId);
+        if (player != null) {
+            player.sendMessage(String.format(
+                    ChatColor.GREEN + "成功保存模板 '%s'! 大小: %dx%dx%d",
+                    name, snapshot.getWidth(), snapshot.getHeight(), snapshot.getLength()
+            ));
+        }
+    }
+
+    private SelectionSnapshot captureSelection(Player player) throws TemplateSaveException {
+        Selection selection = plugin.getSelection(player.getUniqueId());
         if (!selection.isValid()) {
             throw new TemplateSaveException("请先用选择工具划定区域",
                     "玩家未设置完整选区: " + player.getName());
         }
 
         int volume = selection.getVolume();
-        if (volume > MAX_VOLUME) {
-            throw new TemplateSaveException("错误：区域过大（最大" + MAX_VOLUME + "方块）",
+        int maxVolume = plugin.getConfig().getInt("max_volume", 1000000);
+        if (volume > maxVolume) {
+            throw new TemplateSaveException("错误：区域过大（最大" + maxVolume + "方块）",
                     "区域体积过大: " + volume + "方块");
         }
 
+        return SelectionSnapshot.capture(selection);
+    }
+
+    // 在异步线程执行：序列化、统计、压缩、写入和校验
+    private void saveTemplateData(String creator, String name, String displayName,
+                                  SelectionSnapshot selection, boolean explosionDamage) throws TemplateSaveException {
         File templateDir = new File(plugin.getDataFolder(), "templates/" + name);
         if (!templateDir.exists() && !templateDir.mkdirs()) {
             throw new TemplateSaveException("保存失败：无法创建目录",
@@ -87,48 +154,38 @@ public class TemplateManager {
         }
 
         Path structurePath = new File(templateDir, "structure.bin").toPath();
+        Path tempPath = new File(templateDir, "structure.bin.tmp").toPath();
+        Path configPath = new File(templateDir, "data.conf").toPath();
+        Path configTempPath = new File(templateDir, "data.conf.tmp").toPath();
         try {
-            // 创建结构数据并进行深度验证
-            byte[] structureData = createStructureData(selection);
-            validateStructureData(structureData, true); // 深度验证
-
-            // 使用临时文件安全写入
-            Path tempPath = new File(templateDir, "structure.bin.tmp").toPath();
-            Files.write(tempPath, structureData);
-
-            // 验证临时文件完整性
-            long tempSize = Files.size(tempPath);
-            if (tempSize != structureData.length) {
-                Files.deleteIfExists(tempPath);
-                throw new TemplateSaveException("保存失败：文件写入不完整",
-                        "文件大小不一致: " + tempSize + " != " + structureData.length);
+            // 一次扫描同时生成结构数据和方块统计
+            BlockStatistics stats = new BlockStatistics();
+            TemplateStructure structure = createStructure(selection, stats);
+
+            // 以流的方式写入临时文件，同时计算校验和
+            long checksum;
+            try (CheckedOutputStream out = new CheckedOutputStream(Files.newOutputStream(tempPath), new CRC32())) {
+                structure.write(out, codec, compressionLevel);
+                checksum = out.getChecksum().getValue();
             }
 
-            // 原子操作重命名文件
-            Files.move(tempPath, structurePath, StandardCopyOption.REPLACE_EXISTING);
-
-            // 写入后验证文件内容
-            byte[] writtenData = Files.readAllBytes(structurePath);
-            if (!Arrays.equals(structureData, writtenData)) {
-                throw new TemplateSaveException("文件写入不一致", "实际长度: " + writtenData.length);
-            }
-
-            // 计算校验和
-            long checksum = plugin.calculateChecksum(writtenData);
+            // 读回临时文件进行深度验证
+            validateStructureFile(tempPath, checksum);
 
-            // 创建配置文件
-            Path configPath = new File(templateDir, "data.conf").toPath();
-            String configData = createConfigData(player, name, displayName, selection, checksum, explosionDamage);
-            Files.writeString(configPath, configData, StandardCharsets.UTF_8);
+            // 配置文件同样先写临时文件，两个文件都写完后再依次重命名替换
+            // 两次重命名之间读取到的校验和不一致由 readTemplate 识别为保存中，不会当作损坏删除
+            String configData = createConfigData(creator, name, displayName, selection, stats, checksum, explosionDamage);
+            Files.writeString(configTempPath, configData, StandardCharsets.UTF_8);
 
-            player.sendMessage(String.format(
-                    ChatColor.GREEN + "成功保存模板 '%s'! 大小: %dx%dx%d",
-                    name, selection.getWidth(), selection.getHeight(), selection.getLength()
-            ));
+            Files.move(tempPath, structurePath, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(configTempPath, configPath, StandardCopyOption.REPLACE_EXISTING);
+            invalidateTemplate(name);
+            index.update(name);
         } catch (Exception e) {
-            // 出错时删除损坏文件
+            // 出错时只删除临时文件，原有的模板文件保持不变
             try {
-                if (Files.exists(structurePath)) Files.delete(structurePath);
+                Files.deleteIfExists(tempPath);
+                Files.deleteIfExists(configTempPath);
             } catch (IOException ex) {
                 plugin.getLogger().warning("无法删除损坏文件: " + ex.getMessage());
             }
@@ -137,8 +194,7 @@ public class TemplateManager {
         }
     }
 
-    private byte[] createStructureData(Selection selection) throws IOException {
-        Location min = selection.getMinCorner();
+    private TemplateStructure createStructure(SelectionSnapshot selection, BlockStatistics stats) throws IOException {
         int width = selection.getWidth();
         int height = selection.getHeight();
         int length = selection.getLength();
@@ -147,84 +203,40 @@ public class TemplateManager {
             throw new IOException("无效的选区尺寸: " + width + "x" + height + "x" + length);
         }
 
-        // 使用内存缓存批量处理方块数据
-        List<String> blockDataCache = new ArrayList<>(width * height * length);
-        for (int y = 0; y < height; y++) {
-            for (int z = 0; z < length; z++) {
-                for (int x = 0; x < width; x++) {
-                    Block block = min.clone().add(x, y, z).getBlock();
-                    BlockData data = block.getBlockData();
-                    blockDataCache.add((data != null) ? data.getAsString(true) : "minecraft:air");
-                }
-            }
-        }
-
-        // 批量写入方块数据
-        try (ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
-             GZIPOutputStream gzipStream = new GZIPOutputStream(byteStream);
-             BukkitObjectOutputStream out = new BukkitObjectOutputStream(gzipStream)) {
-
-            // 写入文件头
-            out.writeShort(1);
-            out.writeShort(width);
-            out.writeShort(height);
-            out.writeShort(length);
-
-            // 写入整个方块数据数组
-            out.writeObject(blockDataCache.toArray(new String[0]));
-
-            // 确保所有数据写入
-            out.flush();
-            gzipStream.finish();
-            return byteStream.toByteArray();
-        } catch (Exception e) {
-            throw new IOException("方块数据序列化失败: " +  e.getMessage());
-        }
+        // 按分段读取快照，已压缩的分段之外不保留逐格数据
+        return TemplateStructure.build(width, height, length, codec, compressionLevel, (x, y, z) -> {
+            BlockData data = selection.getBlockData(x, y, z);
+            stats.record(data);
+            return (data != null) ? data.getAsString(true) : TemplateStructure.AIR;
+        });
     }
 
-    // 增强版验证方法
-    private void validateStructureData(byte[] data, boolean deepCheck) throws IOException {
-        try (ByteArrayInputStream testStream = new ByteArrayInputStream(data);
-             GZIPInputStream gzip = new GZIPInputStream(testStream);
-             BukkitObjectInputStream in = new BukkitObjectInputStream(gzip)) {
-
-            int version = in.readShort();
-            int width = in.readShort();
-            int height = in.readShort();
-            int length = in.readShort();
-
-            // 基本尺寸验证
-            if (width <= 0 || height <= 0 || length <= 0) {
-                throw new IOException("无效尺寸: " + width + "x" + height + "x" + length);
-            }
-
-            // 深度内容验证
-            if (deepCheck) {
-                String[] blocks = (String[]) in.readObject();
-                int totalBlocks = width * height * length;
+    // 增强版验证方法：校验和一致，所有分段可解码，调色板中的每种方块状态都可解析
+    private void validateStructureFile(Path path, long expectedChecksum) throws IOException {
+        long actualChecksum = plugin.calculateChecksum(path);
+        if (actualChecksum != expectedChecksum) {
+            throw new IOException("文件写入不一致: " + actualChecksum + " != " + expectedChecksum);
+        }
 
-                if (blocks.length != totalBlocks) {
-                    throw new IOException("方块数量不匹配: " + blocks.length + "/" + totalBlocks);
-                }
+        TemplateStructure structure;
+        try (InputStream in = Files.newInputStream(path)) {
+            structure = TemplateStructure.read(in, getMaxVolume());
+        }
+        structure.validate();
 
-                // 随机采样验证
-                int sampleSize = Math.min(50, blocks.length);
-                for (int i = 0; i < sampleSize; i++) {
-                    int index = (int) (Math.random() * blocks.length);
-                    try {
-                        Bukkit.createBlockData(blocks[index]);
-                    } catch (Exception e) {
-                        throw new IOException("方块数据无效(" + index + "): " + blocks[index]);
-                    }
-                }
+        String[] palette = structure.getPalette();
+        for (int i = 0; i < palette.length; i++) {
+            try {
+                BlockDataCache.get(palette[i]);
+            } catch (Exception e) {
+                throw new IOException("方块数据无效(" + i + "): " + palette[i]);
             }
-        } catch (ClassNotFoundException e) {
-            throw new IOException("数据类型错误: " + e.getMessage());
         }
     }
 
-    private String createConfigData(Player player, String name, String displayName,
-                                    Selection selection, long checksum, boolean explosionDamage) {
+    private String createConfigData(String creator, String name, String displayName,
+                                    SelectionSnapshot selection, BlockStatistics stats,
+                                    long checksum, boolean explosionDamage) {
         // 使用 StringBuilder 构建多行带注释的配置文件
         StringBuilder config = new StringBuilder();
         config.append("{\n");
@@ -232,11 +244,11 @@ public class TemplateManager {
         // 基本属性
         config.append("  \"name\": \"").append(name).append("\",\n");
         config.append("  \"display_name\": \"").append(displayName).append("\",\n");
-        config.append("  \"creator\": \"").append(player.getName()).append("\",\n");
+        config.append("  \"creator\": \"").append(creator).append("\",\n");
         config.append("  \"created\": \"").append(DateTimeFormatter.ISO_INSTANT.format(Instant.now().atZone(ZoneId.systemDefault()))).append("\",\n");
 
         // 建筑属性
-        config.append("  \"build_speed\": ").append(5.0).append(",\n");
+        config.append("  \"build_speed\": ").append(plugin.getConfig().getDouble("default_build_speed", 5.0)).append(",\n");
         config.append("  \"preview_color\": \"").append("#00FF00").append("\",\n");
         config.append("  \"opacity\": ").append(0.6).append(",\n");
         config.append("  \"rotation\": ").append(0).append(",\n");
@@ -257,8 +269,9 @@ public class TemplateManager {
         // 方块信息
         config.append("  \"block_info\": {\n");
         config.append("    \"total_blocks\": ").append(selection.getVolume()).append(",\n");
-        config.append("    \"directional_blocks\": ").append(countDirectionalBlocks(selection)).append(",\n");
-        config.append("    \"combustible_blocks\": ").append(countCombustibleBlocks(selection)).append("\n");
+        config.append("    \"non_air_blocks\": ").append(stats.getNonAirBlocks()).append(",\n");
+        config.append("    \"directional_blocks\": ").append(stats.getDirectionalBlocks()).append(",\n");
+        config.append("    \"combustible_blocks\": ").append(stats.getCombustibleBlocks()).append("\n");
         config.append("  },\n");
 
         // 尺寸信息
@@ -268,93 +281,75 @@ public class TemplateManager {
         config.append("    \"length\": ").append(selection.getLength()).append("\n");
         config.append("  },\n");
 
-        // 建筑材料统计
-        config.append("  \"material_stats\": {\n");
-        config.append("    \"stone\": ").append(countBlocksByType(selection, Material.STONE)).append(",\n");
-        config.append("    \"wood\": ").append(countBlocksByType(selection, Material.OAK_PLANKS, Material.SPRUCE_PLANKS, Material.BIRCH_PLANKS)).append(",\n");
-        config.append("    \"glass\": ").append(countBlocksByType(selection, Material.GLASS)).append("\n");
-        config.append("  }\n");
+        // 建筑材料统计（完整直方图）
+        config.append("  \"material_stats\": {");
+        Iterator<Map.Entry<Material, Integer>> materials = stats.getHistogram().entrySet().iterator();
+        while (materials.hasNext()) {
+            Map.Entry<Material, Integer> entry = materials.next();
+            config.append("\n    \"").append(entry.getKey().getKey().getKey()).append("\": ").append(entry.getValue());
+            if (materials.hasNext()) config.append(",");
+        }
+        config.append("\n  }\n");
 
         config.append("}");
 
         return config.toString();
     }
 
-    private int countCombustibleBlocks(Selection selection) {
-        int count = 0;
-        Location min = selection.getMinCorner();
-        Set<Material> combustible = EnumSet.of(
-                Material.OAK_PLANKS, Material.SPRUCE_PLANKS, Material.BIRCH_PLANKS,
-                Material.OAK_LOG, Material.SPRUCE_LOG, Material.BIRCH_LOG,
-                Material.BOOKSHELF, Material.CHEST, Material.TNT
-        );
-
-        for (int y = 0; y < selection.getHeight(); y++) {
-            for (int z = 0; z < selection.getLength(); z++) {
-                for (int x = 0; x < selection.getWidth(); x++) {
-                    Block block = min.clone().add(x, y, z).getBlock();
-                    if (combustible.contains(block.getType())) {
-                        count++;
-                    }
-                }
-            }
+    // 用各压缩方式重新编码模板，比较体积和编码/解码耗时（在异步线程调用）
+    public List<String> benchmarkCodecs(String name) throws IOException {
+        BuildingTemplate template = loadTemplate(name);
+        if (template == null) {
+            throw new IOException("加载模板失败: " + name);
         }
-        return count;
-    }
-
-    private int countBlocksByType(Selection selection, Material... materials) {
-        int count = 0;
-        Set<Material> materialSet = EnumSet.copyOf(Arrays.asList(materials));
-        Location min = selection.getMinCorner();
-
-        for (int y = 0; y < selection.getHeight(); y++) {
-            for (int z = 0; z < selection.getLength(); z++) {
-                for (int x = 0; x < selection.getWidth(); x++) {
-                    Block block = min.clone().add(x, y, z).getBlock();
-                    if (materialSet.contains(block.getType())) {
-                        count++;
-                    }
-                }
-            }
+        TemplateStructure structure = template.getStructure();
+        structure.validate(); // 预热
+
+        List<String> results = new ArrayList<>();
+        results.add(name + " (" + structure.size() + " 方块, " + structure.getSectionCount() + " 分段, 当前 "
+                + structure.getCodec().name().toLowerCase() + " " + structure.getCompressedSize() + " 字节)");
+
+        Set<Integer> levels = new TreeSet<>(Arrays.asList(1, compressionLevel, 9));
+        List<Map.Entry<StructureCodec, Integer>> candidates = new ArrayList<>();
+        candidates.add(new AbstractMap.SimpleEntry<>(StructureCodec.RAW, 0));
+        for (int level : levels) {
+            candidates.add(new AbstractMap.SimpleEntry<>(StructureCodec.DEFLATE, level));
         }
-        return count;
-    }
 
-    // 计算方向性方块数量
-    private int countDirectionalBlocks(Selection selection) {
-        int count = 0;
-        Location min = selection.getMinCorner();
-        for (int y = 0; y < selection.getHeight(); y++) {
-            for (int z = 0; z < selection.getLength(); z++) {
-                for (int x = 0; x < selection.getWidth(); x++) {
-                    Block block = min.clone().add(x, y, z).getBlock();
-                    BlockData data = block.getBlockData();
-                    if (data instanceof Directional) {
-                        count++;
-                    }
-                }
-            }
+        for (Map.Entry<StructureCodec, Integer> candidate : candidates) {
+            long start = System.nanoTime();
+            TemplateStructure encoded = structure.reencode(candidate.getKey(), candidate.getValue());
+            long encodeNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            encoded.validate();
+            long decodeNanos = System.nanoTime() - start;
+
+            String label = candidate.getKey() == StructureCodec.RAW ? "raw" : "deflate-" + candidate.getValue();
+            results.add(String.format("%-10s %9d 字节  编码 %.1f ms  解码 %.1f ms",
+                    label, encoded.getCompressedSize(), encodeNanos / 1e6, decodeNanos / 1e6));
         }
-        return count;
+        return results;
     }
-    // 新增方法：获取所有模板名称
+
     public List<String> getTemplateNames() {
-        List<String> names = new ArrayList<>();
-        File templatesDir = new File(plugin.getDataFolder(), "templates");
-        if (templatesDir.exists() && templatesDir.isDirectory()) {
-            File[] dirs = templatesDir.listFiles(File::isDirectory);
-            if (dirs != null) {
-                for (File dir : dirs) {
-                    names.add(dir.getName());
-                }
-            }
-        }
-        return names;
+        return index.getNames();
     }
-    private String normalizeName(String name) {
+
+    // 获取模板元数据（尺寸、血量），不读取结构文件
+    public TemplateIndex.Entry getTemplateInfo(String name) {
+        return index.get(name);
+    }
+    // 模板名是否已符合保存时的命名规则（批量放置等从外部读取名称时校验，防止 ../ 等路径）
+    public static boolean isValidName(String name) {
+        return !name.isEmpty() && normalizeName(name).equals(name);
+    }
+
+    private static String normalizeName(String name) {
         // 移除文件名中的非法字符，但允许中文字符
         String normalized = name.replaceAll("[\\\\/:*?\"<>|]", "_"); // 仅替换文件系统非法字符
         normalized = normalized.replace(" ", "_"); // 空格替换为下划线
+        normalized = normalized.replaceFirst("^\\.+", "_"); // 开头的点替换为下划线，避免 .. 和隐藏的索引文件
 
         // 限制长度，避免过长
         if (normalized.length() > 64) {
@@ -382,6 +377,129 @@ public class TemplateManager {
     }
 
     public BuildingTemplate loadTemplate(String name) {
+        File templateDir = new File(plugin.getDataFolder(), "templates/" + name);
+        File configFile = new File(templateDir, "data.conf");
+        File structureFile = new File(templateDir, "structure.bin");
+
+        // 文件时间戳和大小未变化时直接使用缓存
+        synchronized (templateCache) {
+            CachedTemplate cached = templateCache.get(name);
+            // 正在重新保存时文件可能只替换了一半，继续使用缓存中的旧版本
+            if (cached != null && (cached.matches(configFile, structureFile) || savingTemplates.contains(name))) {
+                cacheHits++;
+                return cached.template;
+            }
+            if (cached != null) {
+                removeCached(name);
+            }
+            cacheMisses++;
+        }
+
+        // 在读取前记录文件状态，读取期间文件被修改时下次访问会重新加载
+        long configModified = configFile.lastModified();
+        long configSize = configFile.length();
+        long structureModified = structureFile.lastModified();
+        long structureSize = structureFile.length();
+
+        BuildingTemplate template = readTemplate(name);
+        if (template != null) {
+            cacheTemplate(name, new CachedTemplate(template,
+                    configModified, configSize, structureModified, structureSize));
+        }
+        return template;
+    }
+
+    private void cacheTemplate(String name, CachedTemplate entry) {
+        synchronized (templateCache) {
+            // 单个模板超过缓存上限时不缓存
+            if (entry.weight > maxCacheBytes) return;
+
+            removeCached(name);
+            templateCache.put(name, entry);
+            cachedBytes += entry.weight;
+
+            Iterator<Map.Entry<String, CachedTemplate>> iterator = templateCache.entrySet().iterator();
+            while (cachedBytes > maxCacheBytes && iterator.hasNext()) {
+                Map.Entry<String, CachedTemplate> eldest = iterator.next();
+                cachedBytes -= eldest.getValue().weight;
+                iterator.remove();
+            }
+        }
+    }
+
+    private void removeCached(String name) {
+        CachedTemplate removed = templateCache.remove(name);
+        if (removed != null) {
+            cachedBytes -= removed.weight;
+        }
+    }
+
+    public void invalidateTemplate(String name) {
+        synchronized (templateCache) {
+            removeCached(name);
+        }
+    }
+
+    public void clearCache() {
+        synchronized (templateCache) {
+            templateCache.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    public int getCachedTemplateCount() {
+        synchronized (templateCache) {
+            return templateCache.size();
+        }
+    }
+
+    public long getCachedBytes() {
+        synchronized (templateCache) {
+            return cachedBytes;
+        }
+    }
+
+    public long getMaxCacheBytes() { return maxCacheBytes; }
+
+    public long getCacheHits() {
+        synchronized (templateCache) {
+            return cacheHits;
+        }
+    }
+
+    public long getCacheMisses() {
+        synchronized (templateCache) {
+            return cacheMisses;
+        }
+    }
+
+    private static class CachedTemplate {
+        final BuildingTemplate template;
+        final long configModified;
+        final long configSize;
+        final long structureModified;
+        final long structureSize;
+        final long weight;
+
+        CachedTemplate(BuildingTemplate template, long configModified, long configSize,
+                       long structureModified, long structureSize) {
+            this.template = template;
+            this.configModified = configModified;
+            this.configSize = configSize;
+            this.structureModified = structureModified;
+            this.structureSize = structureSize;
+            this.weight = template.getMemorySize();
+        }
+
+        boolean matches(File configFile, File structureFile) {
+            return configFile.lastModified() == configModified
+                    && configFile.length() == configSize
+                    && structureFile.lastModified() == structureModified
+                    && structureFile.length() == structureSize;
+        }
+    }
+
+    private BuildingTemplate readTemplate(String name) {
         File templateDir = new File(plugin.getDataFolder(), "templates/" + name);
         if (!templateDir.exists() || !templateDir.isDirectory()) {
             return null;
@@ -420,13 +538,18 @@ public class TemplateManager {
                 return null;
             }
 
-            byte[] structureData = Files.readAllBytes(structurePath);
-
             // 验证校验和
             long expectedChecksum = config.get("checksum").asLong();
-            long actualChecksum = plugin.calculateChecksum(structureData);
+            long actualChecksum = plugin.calculateChecksum(structurePath);
 
             if (expectedChecksum != actualChecksum) {
+                // 保存过程中两个文件的替换不是同时完成的，此时不一致不代表损坏；
+                // 读取期间保存刚好完成时配置文件已被替换，重新读取校验和即可识别
+                if (savingTemplates.contains(name) || isConfigChecksumChanged(configPath, expectedChecksum)) {
+                    plugin.getLogger().warning("模板正在保存中，暂时无法加载: " + name);
+                    return null;
+                }
+
                 plugin.getLogger().severe("模板校验失败: " + name);
                 plugin.getLogger().severe("预期: " + expectedChecksum + " 实际: " + actualChecksum);
 
@@ -435,6 +558,7 @@ public class TemplateManager {
                     Files.deleteIfExists(configPath);
                     Files.deleteIfExists(structurePath);
                     Files.deleteIfExists(templateDir.toPath());
+                    index.remove(name);
                     plugin.getLogger().info("已删除损坏的模板: " + name);
                 } catch (IOException e) {
                     plugin.getLogger().warning("无法删除损坏的模板: " + name);
@@ -444,8 +568,9 @@ public class TemplateManager {
             }
 
             // 深度验证模板数据
+            TemplateStructure structure;
             try {
-                validateTemplateData(structureData, name);
+                structure = validateTemplateData(structurePath, name);
             } catch (IOException e) {
                 plugin.getLogger().severe("模板数据验证失败: " + e.getMessage());
                 return null;
@@ -458,7 +583,7 @@ public class TemplateManager {
                     config.get("dimensions").asObject().get("height").asInt(),
                     config.get("dimensions").asObject().get("length").asInt(),
                     config.get("build_speed").asDouble(),
-                    structureData,
+                    structure,
                     baseHealth,
                     armor,
                     healthPerBlock,
@@ -489,33 +614,33 @@ public class TemplateManager {
         }
     }
 
-    // 模板数据验证
-    private void validateTemplateData(byte[] data, String name) throws IOException {
-        try (ByteArrayInputStream testStream = new ByteArrayInputStream(data);
-             GZIPInputStream gzip = new GZIPInputStream(testStream);
-             BukkitObjectInputStream in = new BukkitObjectInputStream(gzip)) {
-
-            // 读取文件头
-            int version = in.readShort();
-            int width = in.readShort();
-            int height = in.readShort();
-            int length = in.readShort();
-
-            // 验证尺寸
-            if (width <= 0 || height <= 0 || length <= 0) {
-                throw new IOException("无效的模板尺寸: " + width + "x" + height + "x" + length);
-            }
+    private boolean isConfigChecksumChanged(Path configPath, long expectedChecksum) {
+        try {
+            JsonObject current = JsonValue.readJSON(Files.readString(configPath, StandardCharsets.UTF_8)).asObject();
+            return current.get("checksum").asLong() != expectedChecksum;
+        } catch (Exception e) {
+            return false;
+        }
+    }
 
-            // 加载方块数据
-            String[] blocks = (String[]) in.readObject();
-            int totalBlocks = width * height * length;
+    // 模板数据验证
+    private TemplateStructure validateTemplateData(Path path, String name) throws IOException {
+        // 大文件只读映射，分段在生成时按需解码；校验和已覆盖整个文件，不再预先解码
+        if (Files.size(path) >= mmapMinBytes) {
+            return TemplateStructure.map(path, getMaxVolume());
+        }
 
-            // 验证方块数量
-            if (blocks.length != totalBlocks) {
-                throw new IOException("方块数量不匹配: " + blocks.length + "/" + totalBlocks);
-            }
-        } catch (ClassNotFoundException e) {
-            throw new IOException("数据类型错误: " + e.getMessage());
+        // 小文件流式读入堆内存，兼容版本1和版本2；逐个解码分段校验后丢弃
+        TemplateStructure structure;
+        try (InputStream in = Files.newInputStream(path)) {
+            structure = TemplateStructure.read(in, getMaxVolume());
         }
+        structure.validate();
+        return structure;
+    }
+
+    // 读取模板时的体积上限，与保存时相同；文件头超出即失败，不会按声明的尺寸分配内存
+    private long getMaxVolume() {
+        return plugin.getConfig().getInt("max_volume", 1000000);
     }
 }
\ No newline at end of file
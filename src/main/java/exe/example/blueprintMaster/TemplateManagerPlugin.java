@@ -10,6 +10,7 @@ import org.bukkit.scheduler.BukkitRunnable;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -28,6 +29,9 @@ public class TemplateManagerPlugin extends JavaPlugin {
     private BuildingHealthSystem healthSystem;
     private BuildingProtectionSystem protectionSystem;
     private BuildingCollapseSystem collapseSystem;
+    private PlacementScheduler placementScheduler;
+    private GenerationController generationController;
+    private UndoManager undoManager;
 
     @Override
     public void onEnable() {
@@ -35,6 +39,7 @@ public class TemplateManagerPlugin extends JavaPlugin {
         getCommand("template").setExecutor(templateCommand);
         getCommand("template").setTabCompleter(templateCommand);
         saveDefaultConfig();
+        super.reloadConfig(); // 直接加载配置，避免首次 getConfig() 触发系统重载
 
         healthSystem = new BuildingHealthSystem(this);
         repairSystem = new BuildingRepairSystem(this);
@@ -54,6 +59,14 @@ public class TemplateManagerPlugin extends JavaPlugin {
         templateManager = new TemplateManager(this);
         itemListener = new TemplateItemListener(this);
 
+        placementScheduler = new PlacementScheduler(this);
+        placementScheduler.runTaskTimer(this, 1, 1);
+        undoManager = new UndoManager(this);
+        generationController = new GenerationController(this);
+        generationController.runTaskTimer(this, GenerationController.UPDATE_PERIOD_TICKS,
+                GenerationController.UPDATE_PERIOD_TICKS);
+        generationController.resumeCheckpoints();
+
         getCommand("template").setExecutor(new TemplateCommand(this));
         getServer().getPluginManager().registerEvents(new SelectionWandListener(this), this);
         getServer().getPluginManager().registerEvents(itemListener, this);
@@ -70,12 +83,19 @@ public class TemplateManagerPlugin extends JavaPlugin {
         super.reloadConfig();
         getLogger().info("重新加载配置文件...");
         reloadSystems();
+        BlockDataCache.clear();
         templateManager = new TemplateManager(this);
+        placementScheduler.reloadSettings();
+        generationController.reloadSettings();
+        undoManager.reloadSettings();
         getLogger().info("配置重载完成!");
     }
 
     private void reloadSystems() {
         HandlerList.unregisterAll(this);
+        if (healthSystem != null) {
+            healthSystem.shutdown();
+        }
         healthSystem = new BuildingHealthSystem(this);
         repairSystem = new BuildingRepairSystem(this);
         protectionSystem = new BuildingProtectionSystem(healthSystem);
@@ -115,14 +135,30 @@ public class TemplateManagerPlugin extends JavaPlugin {
 
     private String getDefaultConfigContent() {
         return "# TemplateManager 配置\n" +
-                "# 默认建筑生成速度（秒/方块）\n" +
+                "# 默认建筑生成时长（秒，整座建筑），0 表示在时间预算内尽快完成\n" +
                 "default_build_speed: 5.0\n\n" +
+                "# 建筑生成调度\n" +
+                "generation:\n" +
+                "  # 每 tick 用于放置方块的时间预算（毫秒），所有建筑共享\n" +
+                "  tick_budget_ms: 2.0\n" +
+                "  # 服务器繁忙时的最低预算（毫秒），保证建筑仍能推进\n" +
+                "  min_tick_budget_ms: 0.5\n" +
+                "  # 目标 MSPT，平均 tick 耗时接近该值时自动缩减预算\n" +
+                "  target_mspt: 45.0\n" +
+                "  # 生成前清除模板空气位置上的现有方块；关闭后只放置非空气方块，保留原地形\n" +
+                "  clear_obstructions: true\n" +
+                "  # 生成进度检查点写入间隔（秒），重启后从检查点继续\n" +
+                "  checkpoint_interval_seconds: 5.0\n" +
+                "  # 每位玩家保留的撤销日志数量（/template undo）\n" +
+                "  undo_history: 5\n" +
+                "  # 批量放置时同时生成的建筑数量上限\n" +
+                "  batch_max_concurrent: 8\n\n" +
                 "# 建筑轮廓预览颜色（HEX格式）\n" +
                 "preview_color: \"#00FF00\"\n\n" +
                 "# 轮廓透明度（0.0-1.0）\n" +
                 "opacity: 0.6\n\n" +
                 "# 最大保存区域体积（方块数）\n" +
-                "max_volume: 10000\n\n" +
+                "max_volume: 1000000\n\n" +
                 "# 血量系统配置\n" +
                 "health_system:\n" +
                 "  # 基础血量值\n" +
@@ -137,6 +173,8 @@ public class TemplateManagerPlugin extends JavaPlugin {
                 "  attract_monsters: false\n\n" +
                 "# 攻击系统配置\n" +
                 "attack_system:\n" +
+                "  # 怪物攻击与仇恨逻辑每 tick 的时间预算（毫秒），每轮的处理量平均分摊到各个 tick\n" +
+                "  tick_budget_ms: 1.0\n" +
                 "  # 近战攻击范围\n" +
                 "  melee_range: 1.5\n" +
                 "  # 远程攻击范围\n" +
@@ -207,8 +245,14 @@ public class TemplateManagerPlugin extends JavaPlugin {
                 "template_manager:\n" +
                 "  # 自动清理损坏模板\n" +
                 "  auto_clean_corrupted: true\n" +
+                "  # 结构文件压缩方式（deflate: 体积小；raw: 不压缩，读写最快）\n" +
+                "  codec: deflate\n" +
                 "  # 模板文件压缩级别（1-9）\n" +
-                "  compression_level: 6";
+                "  compression_level: 6\n" +
+                "  # 已加载模板缓存上限（MB）\n" +
+                "  cache_max_mb: 64\n" +
+                "  # 超过此大小（KB）的结构文件使用内存映射读取\n" +
+                "  mmap_min_kb: 256";
     }
 
     private void startOutlineRendering() {
@@ -220,6 +264,18 @@ public class TemplateManagerPlugin extends JavaPlugin {
         }.runTaskTimer(this, 0, 20);
     }
 
+    public PlacementScheduler getPlacementScheduler() {
+        return placementScheduler;
+    }
+
+    public GenerationController getGenerationController() {
+        return generationController;
+    }
+
+    public UndoManager getUndoManager() {
+        return undoManager;
+    }
+
     public BuildingHealthSystem getHealthSystem() {
         return healthSystem;
     }
@@ -233,6 +289,15 @@ public class TemplateManagerPlugin extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (healthSystem != null) {
+            healthSystem.shutdown();
+        }
+        if (generationController != null) {
+            generationController.shutdown();
+        }
+        if (undoManager != null) {
+            undoManager.shutdown();
+        }
         getLogger().info("TemplateManager 已禁用!");
     }
 
@@ -270,6 +335,19 @@ public class TemplateManagerPlugin extends JavaPlugin {
         return crc.getValue();
     }
 
+    // 流式计算文件校验和，不整体读入内存
+    public long calculateChecksum(Path path) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
     public boolean templateExists(String name) {
         File templateDir = new File(getDataFolder(), "templates/" + name);
         return templateDir.exists() && templateDir.isDirectory();
@@ -359,4 +437,9 @@ public class TemplateManagerPlugin extends JavaPlugin {
         template.generate(player, location, rotation);
         return true;
     }
+
+    // 批量生成：每个模板只加载一次，按 generation.batch_max_concurrent 限制同时生成的数量
+    public void generateBatch(Player player, List<BatchPlacement.Entry> entries) {
+        BatchPlacement.start(this, player, entries);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,736 @@
+package exe.example.blueprintMaster;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+// 模板结构数据：全局方块状态调色板 + 16x16x16 分段
+// 每个分段按文件头记录的压缩方式独立编码，按需解码，解码后的分段只保留有限数量，大模板不会整体展开在内存中
+public class TemplateStructure {
+    public static final int VERSION_LEGACY = 1;   // 旧格式：整个 String[] 序列化
+    public static final int VERSION_PALETTE = 2;  // 调色板 + 位压缩索引
+    public static final int VERSION_SECTIONS = 3; // 文件头 + 全局调色板 + 独立压缩的分段
+    public static final int VERSION_CODEC = 4;    // 文件头增加压缩方式
+    public static final int VERSION_VARINT = 5;   // 不再使用 writeUTF/定长整数：变长整数 + 标准 UTF-8
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    public static final int MAGIC = 0x42504D53;   // "BPMS"
+    public static final String AIR = "minecraft:air";
+
+    static final int SECTION_SHIFT = 4;
+    static final int SECTION_SIZE = 1 << SECTION_SHIFT;
+    static final int SECTION_VOLUME = SECTION_SIZE * SECTION_SIZE * SECTION_SIZE;
+    private static final int MAX_SECTION_BYTES = 1 << 16;
+    // 局部调色板最多 4096 项，索引最多 12 位
+    private static final int MAX_DECODED_SECTION_BYTES = 2 + SECTION_VOLUME * 4 + SECTION_VOLUME * 2;
+    private static final int DECODED_SECTION_LIMIT = 64;
+
+    // 读取限制：损坏或恶意文件在有限内存和时间内失败
+    private static final int MAX_PALETTE_SIZE = 1 << 16;
+    private static final int MAX_STATE_BYTES = 4096;
+    private static final int LEGACY_MAX_BLOCKS = 1 << 20;
+    public static final long MAX_VOLUME = 1L << 27; // 未指定上限时允许的最大体积
+
+    // 按模板内相对坐标提供方块状态
+    public interface StateSource {
+        String getState(int x, int y, int z) throws IOException;
+    }
+
+    // 逐格访问：模板内相对坐标和全局调色板编号
+    public interface CellVisitor {
+        void visit(int x, int y, int z, int paletteIndex);
+    }
+
+    private final int width;
+    private final int height;
+    private final int length;
+    private final int sectionsX;
+    private final int sectionsY;
+    private final int sectionsZ;
+    private final String[] palette;
+    private final int sectionFormat;        // 分段数据的编码版本（VERSION_SECTIONS 起）
+    private final StructureCodec codec;
+    private final ByteBuffer sectionData;   // 所有分段的压缩数据，可能是文件映射
+    private final int[] sectionOffsets;     // 第 i 个分段位于 [offsets[i], offsets[i + 1])
+    private final boolean mapped;
+
+    // 最近使用的已解码分段
+    private final Map<Integer, Section> decoded = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Section> eldest) {
+            return size() > DECODED_SECTION_LIMIT;
+        }
+    };
+
+    private TemplateStructure(int width, int height, int length, String[] palette, int sectionFormat,
+                              StructureCodec codec, ByteBuffer sectionData, int[] sectionOffsets, boolean mapped) {
+        this.width = width;
+        this.height = height;
+        this.length = length;
+        this.sectionsX = sectionCount(width);
+        this.sectionsY = sectionCount(height);
+        this.sectionsZ = sectionCount(length);
+        this.palette = palette;
+        this.sectionFormat = sectionFormat;
+        this.codec = codec;
+        this.sectionData = sectionData;
+        this.sectionOffsets = sectionOffsets;
+        this.mapped = mapped;
+    }
+
+    private static int sectionCount(int size) {
+        return (size + SECTION_SIZE - 1) >> SECTION_SHIFT;
+    }
+
+    public static TemplateStructure build(int width, int height, int length, StateSource source) throws IOException {
+        return build(width, height, length, StructureCodec.DEFLATE, DEFAULT_COMPRESSION_LEVEL, source);
+    }
+
+    // 逐分段读取方块状态并压缩，调色板在同一次扫描中建立
+    public static TemplateStructure build(int width, int height, int length, StructureCodec codec, int level,
+                                          StateSource source) throws IOException {
+        int sectionsX = sectionCount(width);
+        int sectionsY = sectionCount(height);
+        int sectionsZ = sectionCount(length);
+        Map<String, Integer> paletteIndex = new LinkedHashMap<>();
+        byte[][] sections = new byte[sectionsX * sectionsY * sectionsZ][];
+        int[] cells = new int[SECTION_VOLUME];
+
+        int sectionIndex = 0;
+        for (int sy = 0; sy < sectionsY; sy++) {
+            for (int sz = 0; sz < sectionsZ; sz++) {
+                for (int sx = 0; sx < sectionsX; sx++) {
+                    int baseX = sx << SECTION_SHIFT;
+                    int baseY = sy << SECTION_SHIFT;
+                    int baseZ = sz << SECTION_SHIFT;
+                    int count = 0;
+                    for (int y = baseY; y < Math.min(height, baseY + SECTION_SIZE); y++) {
+                        for (int z = baseZ; z < Math.min(length, baseZ + SECTION_SIZE); z++) {
+                            for (int x = baseX; x < Math.min(width, baseX + SECTION_SIZE); x++) {
+                                String state = source.getState(x, y, z);
+                                if (state == null) state = AIR;
+                                cells[count++] = paletteIndex.computeIfAbsent(state, k -> paletteIndex.size());
+                            }
+                        }
+                    }
+                    sections[sectionIndex++] = codec.encode(encodeSection(cells, count), level);
+                }
+            }
+        }
+        if (paletteIndex.size() > MAX_PALETTE_SIZE) {
+            throw new IOException("方块状态种类过多: " + paletteIndex.size());
+        }
+        return fromSections(width, height, length, paletteIndex.keySet().toArray(new String[0]), codec, sections);
+    }
+
+    private static TemplateStructure fromSections(int width, int height, int length, String[] palette,
+                                                  StructureCodec codec, byte[][] sections) {
+        int[] offsets = new int[sections.length + 1];
+        for (int i = 0; i < sections.length; i++) {
+            offsets[i + 1] = offsets[i] + sections[i].length;
+        }
+        byte[] data = new byte[offsets[sections.length]];
+        for (int i = 0; i < sections.length; i++) {
+            System.arraycopy(sections[i], 0, data, offsets[i], sections[i].length);
+        }
+        return new TemplateStructure(width, height, length, palette, VERSION_VARINT, codec,
+                ByteBuffer.wrap(data).asReadOnlyBuffer(), offsets, false);
+    }
+
+    // 用另一种压缩方式重新编码所有分段（调色板和分段内容不变）
+    public TemplateStructure reencode(StructureCodec target, int level) throws IOException {
+        byte[][] sections = new byte[getSectionCount()][];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = target.encode(sectionPayload(i), level);
+        }
+        return fromSections(width, height, length, palette, target, sections);
+    }
+
+    // 当前格式的未压缩分段数据；旧格式的分段先解码再重新编码
+    private byte[] sectionPayload(int sectionIndex) throws IOException {
+        if (sectionFormat == VERSION_VARINT) {
+            return codec.decode(sectionSlice(sectionIndex), MAX_DECODED_SECTION_BYTES);
+        }
+        Section section = decodeSection(sectionIndex);
+        int count = getSectionVolume(sectionIndex);
+        int[] cells = new int[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = section.get(i);
+        }
+        return encodeSection(cells, count);
+    }
+
+    // 分段数据：局部调色板（变长整数，指向全局调色板）+ 位压缩索引；只有一种方块时不写索引
+    private static byte[] encodeSection(int[] cells, int count) throws IOException {
+        Map<Integer, Integer> localIndex = new LinkedHashMap<>();
+        int[] local = new int[count];
+        for (int i = 0; i < count; i++) {
+            local[i] = localIndex.computeIfAbsent(cells[i], k -> localIndex.size());
+        }
+
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(byteStream)) {
+            writeVarInt(out, localIndex.size());
+            for (int globalId : localIndex.keySet()) {
+                writeVarInt(out, globalId);
+            }
+            if (localIndex.size() > 1) {
+                int bits = bitsFor(localIndex.size());
+                int perLong = 64 / bits;
+                long[] packed = new long[(count + perLong - 1) / perLong];
+                for (int i = 0; i < count; i++) {
+                    packed[i / perLong] |= (long) local[i] << ((i % perLong) * bits);
+                }
+                for (long word : packed) {
+                    out.writeLong(word);
+                }
+            }
+        }
+        return byteStream.toByteArray();
+    }
+
+    // 根据调色板大小选择每个索引的位数
+    static int bitsFor(int paletteSize) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(1, paletteSize - 1)));
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+    public int getLength() { return length; }
+    public int size() { return width * height * length; }
+    public String[] getPalette() { return palette; }
+    public int getSectionCount() { return sectionOffsets.length - 1; }
+    public boolean isMapped() { return mapped; }
+    public StructureCodec getCodec() { return codec; }
+    public int getCompressedSize() { return sectionData.limit(); }
+
+    // 占用堆内存的大致字节数：调色板 + 分段偏移 + 解码分段的上限；映射的分段数据不计入
+    public long getMemorySize() {
+        long size = sectionOffsets.length * 4L;
+        if (!mapped) {
+            size += sectionData.limit();
+        }
+        for (String state : palette) {
+            size += state.length() * 2L;
+        }
+        long decodedSection = SECTION_VOLUME * (long) bitsFor(palette.length) / 8;
+        return size + Math.min(getSectionCount(), DECODED_SECTION_LIMIT) * decodedSection;
+    }
+
+    public int getPaletteIndex(int index) {
+        int x = index % width;
+        int z = (index / width) % length;
+        int y = index / (width * length);
+        return getPaletteIndex(x, y, z);
+    }
+
+    public int getPaletteIndex(int x, int y, int z) {
+        int sx = x >> SECTION_SHIFT;
+        int sy = y >> SECTION_SHIFT;
+        int sz = z >> SECTION_SHIFT;
+        int sectionWidth = Math.min(SECTION_SIZE, width - (sx << SECTION_SHIFT));
+        int sectionLength = Math.min(SECTION_SIZE, length - (sz << SECTION_SHIFT));
+        int local = ((y & (SECTION_SIZE - 1)) * sectionLength + (z & (SECTION_SIZE - 1))) * sectionWidth
+                + (x & (SECTION_SIZE - 1));
+        return getSection((sy * sectionsZ + sz) * sectionsX + sx).get(local);
+    }
+
+    public String getState(int index) {
+        return palette[getPaletteIndex(index)];
+    }
+
+    public String getState(int x, int y, int z) {
+        return palette[getPaletteIndex(x, y, z)];
+    }
+
+    private Section getSection(int sectionIndex) {
+        synchronized (decoded) {
+            Section section = decoded.get(sectionIndex);
+            if (section == null) {
+                try {
+                    section = decodeSection(sectionIndex);
+                } catch (IOException e) {
+                    throw new IllegalStateException("分段数据损坏(" + sectionIndex + "): " + e.getMessage(), e);
+                }
+                decoded.put(sectionIndex, section);
+            }
+            return section;
+        }
+    }
+
+    private int getSectionVolume(int sectionIndex) {
+        int sx = sectionIndex % sectionsX;
+        int sz = (sectionIndex / sectionsX) % sectionsZ;
+        int sy = sectionIndex / (sectionsX * sectionsZ);
+        return Math.min(SECTION_SIZE, width - (sx << SECTION_SHIFT))
+                * Math.min(SECTION_SIZE, height - (sy << SECTION_SHIFT))
+                * Math.min(SECTION_SIZE, length - (sz << SECTION_SHIFT));
+    }
+
+    private ByteBuffer sectionSlice(int sectionIndex) {
+        ByteBuffer input = sectionData.duplicate();
+        input.limit(sectionOffsets[sectionIndex + 1]).position(sectionOffsets[sectionIndex]);
+        return input;
+    }
+
+    private Section decodeSection(int sectionIndex) throws IOException {
+        int count = getSectionVolume(sectionIndex);
+        ByteBuffer in = ByteBuffer.wrap(codec.decode(sectionSlice(sectionIndex), MAX_DECODED_SECTION_BYTES));
+        try {
+            // 版本3/4：无符号 short 长度 + int 索引；版本5：变长整数
+            boolean varint = sectionFormat == VERSION_VARINT;
+            int localSize = varint ? readVarInt(in) : in.getShort() & 0xFFFF;
+            if (localSize <= 0 || localSize > count) {
+                throw new IOException("无效的分段调色板大小: " + localSize);
+            }
+            int[] ids = new int[localSize];
+            for (int i = 0; i < localSize; i++) {
+                ids[i] = varint ? readVarInt(in) : in.getInt();
+                if (ids[i] < 0 || ids[i] >= palette.length) {
+                    throw new IOException("调色板索引越界: " + ids[i]);
+                }
+            }
+            Section section;
+            if (localSize == 1) {
+                section = new Section(ids, 0, null);
+            } else {
+                int bits = bitsFor(localSize);
+                int perLong = 64 / bits;
+                long[] packed = new long[(count + perLong - 1) / perLong];
+                for (int i = 0; i < packed.length; i++) {
+                    packed[i] = in.getLong();
+                }
+                section = new Section(ids, bits, packed);
+            }
+            if (in.hasRemaining()) {
+                throw new IOException("分段数据长度不匹配(" + sectionIndex + ")");
+            }
+            for (int i = 0; i < count; i++) {
+                if (section.getLocal(i) >= localSize) {
+                    throw new IOException("分段索引越界(" + i + ")");
+                }
+            }
+            return section;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("分段数据不完整(" + sectionIndex + ")");
+        }
+    }
+
+    // 按分段顺序访问所有格子，每个分段只解码一次，不放入缓存也不挤出缓存中的分段
+    public void forEachCell(CellVisitor visitor) throws IOException {
+        for (int sy = 0; sy < sectionsY; sy++) {
+            for (int sz = 0; sz < sectionsZ; sz++) {
+                for (int sx = 0; sx < sectionsX; sx++) {
+                    Section section = decodeSection((sy * sectionsZ + sz) * sectionsX + sx);
+                    int baseX = sx << SECTION_SHIFT;
+                    int baseY = sy << SECTION_SHIFT;
+                    int baseZ = sz << SECTION_SHIFT;
+                    int sectionWidth = Math.min(SECTION_SIZE, width - baseX);
+                    int sectionHeight = Math.min(SECTION_SIZE, height - baseY);
+                    int sectionLength = Math.min(SECTION_SIZE, length - baseZ);
+
+                    int local = 0;
+                    for (int y = 0; y < sectionHeight; y++) {
+                        for (int z = 0; z < sectionLength; z++) {
+                            for (int x = 0; x < sectionWidth; x++) {
+                                visitor.visit(baseX + x, baseY + y, baseZ + z, section.get(local++));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // 逐个解码所有分段进行校验，不放入缓存
+    public void validate() throws IOException {
+        for (int i = 0; i < getSectionCount(); i++) {
+            decodeSection(i);
+        }
+    }
+
+    // 写入版本5文件：文件头（含压缩方式）、全局调色板、分段长度表、各分段数据
+    // 旧格式或压缩方式与 target 不同时先按 target 和 level 重新编码
+    public void write(OutputStream output, StructureCodec target, int level) throws IOException {
+        if (sectionFormat != VERSION_VARINT || codec != target) {
+            reencode(target, level).write(output, target, level);
+            return;
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION_VARINT);
+        out.writeByte(codec.getId());
+        writeVarInt(out, width);
+        writeVarInt(out, height);
+        writeVarInt(out, length);
+
+        writeVarInt(out, palette.length);
+        for (String state : palette) {
+            byte[] bytes = state.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+
+        int sectionCount = getSectionCount();
+        writeVarInt(out, sectionCount);
+        for (int i = 0; i < sectionCount; i++) {
+            writeVarInt(out, sectionOffsets[i + 1] - sectionOffsets[i]);
+        }
+        ByteBuffer data = sectionData.duplicate();
+        data.position(0);
+        byte[] buffer = new byte[8192];
+        while (data.hasRemaining()) {
+            int chunk = Math.min(buffer.length, data.remaining());
+            data.get(buffer, 0, chunk);
+            out.write(buffer, 0, chunk);
+        }
+        out.flush();
+    }
+
+    public static TemplateStructure read(byte[] data) throws IOException {
+        return read(new ByteArrayInputStream(data), MAX_VOLUME, true);
+    }
+
+    public static TemplateStructure read(InputStream input) throws IOException {
+        return read(input, MAX_VOLUME);
+    }
+
+    public static TemplateStructure read(InputStream input, long maxVolume) throws IOException {
+        return read(input, maxVolume, false);
+    }
+
+    // 读取 structure.bin：版本1/2 为整体 GZIP 压缩，版本3 起以 MAGIC 开头
+    // maxVolume: 文件头声明的体积超过该值直接失败，在分配任何按体积增长的数组之前检查
+    // exactLength: input.available() 是否等于剩余的全部字节（字节数组、映射文件）
+    private static TemplateStructure read(InputStream input, long maxVolume, boolean exactLength) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return readLegacy(buffered, maxVolume);
+        }
+
+        DataInputStream in = new DataInputStream(buffered);
+        Header header = readHeader(in, maxVolume, exactLength);
+
+        // 逐段读取，内存占用随实际读到的数据增长，不按文件头声明的长度预先分配
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[MAX_SECTION_BYTES];
+        int[] offsets = header.offsets;
+        for (int i = 0; i + 1 < offsets.length; i++) {
+            int size = offsets[i + 1] - offsets[i];
+            in.readFully(buffer, 0, size);
+            data.write(buffer, 0, size);
+        }
+        return new TemplateStructure(header.width, header.height, header.length, header.palette, header.version,
+                header.codec, ByteBuffer.wrap(data.toByteArray()).asReadOnlyBuffer(), offsets, false);
+    }
+
+    // 只读映射 structure.bin，分段数据留在文件映射中，按需解压，不占用堆内存
+    public static TemplateStructure map(Path path) throws IOException {
+        return map(path, MAX_VOLUME);
+    }
+
+    public static TemplateStructure map(Path path, long maxVolume) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("结构文件过大: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (size >= 2 && (buffer.get(0) & 0xFF) == 0x1f && (buffer.get(1) & 0xFF) == 0x8b) {
+                return readLegacy(new BufferInputStream(buffer), maxVolume);
+            }
+
+            Header header = readHeader(new DataInputStream(new BufferInputStream(buffer)), maxVolume, true);
+            if (buffer.remaining() != header.getDataSize()) {
+                throw new IOException("分段数据长度不匹配: " + buffer.remaining() + "/" + header.getDataSize());
+            }
+            return new TemplateStructure(header.width, header.height, header.length, header.palette, header.version,
+                    header.codec, buffer.slice(), header.offsets, true);
+        }
+    }
+
+    private static Header readHeader(DataInputStream in, long maxVolume, boolean exactLength) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("无法识别的结构文件");
+        }
+        int version = in.readShort();
+        if (version < VERSION_SECTIONS || version > VERSION_VARINT) {
+            throw new IOException("不支持的结构版本: " + version);
+        }
+        StructureCodec codec = version >= VERSION_CODEC
+                ? StructureCodec.fromId(in.readUnsignedByte())
+                : StructureCodec.DEFLATE;
+        boolean varint = version >= VERSION_VARINT;
+
+        int width = varint ? readVarInt(in) : in.readInt();
+        int height = varint ? readVarInt(in) : in.readInt();
+        int length = varint ? readVarInt(in) : in.readInt();
+        long totalBlocks = checkDimensions(width, height, length, maxVolume);
+
+        int paletteSize = varint ? readVarInt(in) : in.readInt();
+        if (paletteSize <= 0 || paletteSize > Math.min(totalBlocks, MAX_PALETTE_SIZE)) {
+            throw new IOException("无效的调色板大小: " + paletteSize);
+        }
+        String[] palette = new String[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            palette[i] = varint ? readState(in) : in.readUTF();
+        }
+
+        int sectionCount = varint ? readVarInt(in) : in.readInt();
+        int expectedSections = sectionCount(width) * sectionCount(height) * sectionCount(length);
+        if (sectionCount != expectedSections) {
+            throw new IOException("分段数量不匹配: " + sectionCount + "/" + expectedSections);
+        }
+        // 每个分段至少占 1 字节长度 + 1 字节数据；已知剩余长度且不够时不分配偏移表
+        if (exactLength && sectionCount * 2L > in.available()) {
+            throw new IOException("分段数量超出文件长度: " + sectionCount);
+        }
+        // 长度未知的流按实际读到的分段逐步扩容
+        int[] offsets = new int[Math.min(sectionCount, 1024) + 1];
+        long offset = 0;
+        for (int i = 0; i < sectionCount; i++) {
+            if (i + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, (int) Math.min(sectionCount + 1L, offsets.length * 2L));
+            }
+            int size = varint ? readVarInt(in) : in.readInt();
+            if (size <= 0 || size > MAX_SECTION_BYTES) {
+                throw new IOException("无效的分段长度(" + i + "): " + size);
+            }
+            offset += size;
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("分段数据过大");
+            }
+            offsets[i + 1] = (int) offset;
+        }
+        return new Header(version, width, height, length, palette, codec, offsets);
+    }
+
+    // 严格 UTF-8 解码，长度受限，非法字节直接失败
+    static String readState(DataInputStream in) throws IOException {
+        int size = readVarInt(in);
+        if (size <= 0 || size > MAX_STATE_BYTES) {
+            throw new IOException("无效的方块状态长度: " + size);
+        }
+        byte[] bytes = new byte[size];
+        in.readFully(bytes);
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(bytes))
+                .toString();
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    // 最多 5 个字节，且不接受负数
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) throw new IOException("无效的变长整数");
+                return value;
+            }
+        }
+        throw new IOException("变长整数过长");
+    }
+
+    private static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) throw new IOException("无效的变长整数");
+                return value;
+            }
+        }
+        throw new IOException("变长整数过长");
+    }
+
+    private static long checkDimensions(int width, int height, int length, long maxVolume) throws IOException {
+        if (width <= 0 || height <= 0 || length <= 0) {
+            throw new IOException("无效尺寸: " + width + "x" + height + "x" + length);
+        }
+        long totalBlocks = (long) width * height * length;
+        if (totalBlocks > Math.min(maxVolume, Integer.MAX_VALUE)) {
+            throw new IOException("尺寸过大: " + width + "x" + height + "x" + length);
+        }
+        return totalBlocks;
+    }
+
+    // 旧版本文件读取后转换为分段结构
+    // 只允许反序列化 String[]，数组长度、嵌套深度和读取字节数都有上限，不会实例化其它类
+    private static TemplateStructure readLegacy(InputStream input, long maxVolume) throws IOException {
+        try (GZIPInputStream gzipStream = new GZIPInputStream(input);
+             ObjectInputStream in = new ObjectInputStream(gzipStream)) {
+            in.setObjectInputFilter(info -> {
+                Class<?> type = info.serialClass();
+                if (type != null && type != String[].class && type != String.class) {
+                    return ObjectInputFilter.Status.REJECTED;
+                }
+                if (info.arrayLength() > LEGACY_MAX_BLOCKS || info.depth() > 2
+                        || info.streamBytes() > LEGACY_MAX_BLOCKS * (long) MAX_STATE_BYTES) {
+                    return ObjectInputFilter.Status.REJECTED;
+                }
+                return ObjectInputFilter.Status.ALLOWED;
+            });
+
+            int version = in.readShort();
+            int width = in.readShort();
+            int height = in.readShort();
+            int length = in.readShort();
+            long volume = checkDimensions(width, height, length, maxVolume);
+            if (volume > LEGACY_MAX_BLOCKS) {
+                throw new IOException("旧格式模板过大: " + volume);
+            }
+            int totalBlocks = (int) volume;
+
+            switch (version) {
+                case VERSION_LEGACY: {
+                    Object blocksObject = in.readObject();
+                    if (!(blocksObject instanceof String[])) {
+                        throw new IOException("数据类型错误: 需要 String[]");
+                    }
+                    String[] blocks = (String[]) blocksObject;
+                    if (blocks.length != totalBlocks) {
+                        throw new IOException("方块数量不匹配: " + blocks.length + "/" + totalBlocks);
+                    }
+                    return build(width, height, length, (x, y, z) -> blocks[y * width * length + z * width + x]);
+                }
+                case VERSION_PALETTE: {
+                    int paletteSize = in.readInt();
+                    if (paletteSize <= 0 || paletteSize > Math.min(totalBlocks, MAX_PALETTE_SIZE)) {
+                        throw new IOException("无效的调色板大小: " + paletteSize);
+                    }
+                    String[] palette = new String[paletteSize];
+                    for (int i = 0; i < paletteSize; i++) {
+                        palette[i] = in.readUTF();
+                    }
+
+                    int bits = in.readByte();
+                    if (bits != bitsFor(paletteSize)) {
+                        throw new IOException("索引位数不匹配: " + bits);
+                    }
+                    int perLong = 64 / bits;
+                    int expectedLongs = (totalBlocks + perLong - 1) / perLong;
+                    int longCount = in.readInt();
+                    if (longCount != expectedLongs) {
+                        throw new IOException("方块数量不匹配: " + longCount + "/" + expectedLongs);
+                    }
+                    long[] packed = new long[longCount];
+                    for (int i = 0; i < longCount; i++) {
+                        packed[i] = in.readLong();
+                    }
+
+                    long mask = (1L << bits) - 1;
+                    return build(width, height, length, (x, y, z) -> {
+                        int i = y * width * length + z * width + x;
+                        int id = (int) ((packed[i / perLong] >>> ((i % perLong) * bits)) & mask);
+                        if (id >= paletteSize) {
+                            throw new IOException("调色板索引越界(" + i + ")");
+                        }
+                        return palette[id];
+                    });
+                }
+                default:
+                    throw new IOException("不支持的结构版本: " + version);
+            }
+        } catch (ClassNotFoundException | InvalidClassException e) {
+            throw new IOException("数据类型错误: " + e.getMessage());
+        }
+    }
+
+    private static final class Header {
+        private final int version;
+        private final int width;
+        private final int height;
+        private final int length;
+        private final String[] palette;
+        private final StructureCodec codec;
+        private final int[] offsets;
+
+        Header(int version, int width, int height, int length, String[] palette, StructureCodec codec, int[] offsets) {
+            this.version = version;
+            this.width = width;
+            this.height = height;
+            this.length = length;
+            this.palette = palette;
+            this.codec = codec;
+            this.offsets = offsets;
+        }
+
+        int getDataSize() {
+            return offsets[offsets.length - 1];
+        }
+    }
+
+    // 以 InputStream 方式读取 ByteBuffer，读取位置与缓冲区同步
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+    }
+
+    private static final class Section {
+        private final int[] ids;      // 局部调色板 -> 全局调色板
+        private final int bits;
+        private final long[] packed;
+
+        Section(int[] ids, int bits, long[] packed) {
+            this.ids = ids;
+            this.bits = bits;
+            this.packed = packed;
+        }
+
+        int getLocal(int index) {
+            if (bits == 0) return 0;
+            int perLong = 64 / bits;
+            return (int) ((packed[index / perLong] >>> ((index % perLong) * bits)) & ((1L << bits) - 1));
+        }
+
+        int get(int index) {
+            return ids[getLocal(index)];
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,78 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.function.Consumer;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+// 分时执行器：每 period 个 tick 为一轮，轮首取一次工作项快照，每项在本轮处理一次
+// 处理量平均分摊到本轮各个 tick，每 tick 另受纳秒预算限制；未处理完的顺延，追上之前不开始新一轮
+// 工作项可能在快照后失效，action 需要自行检查；预算在每轮开始时重新读取，重载配置后下一轮生效
+public class TimeSlicedExecutor<T> extends BukkitRunnable {
+    private final Plugin plugin;
+    private final String name;
+    private final int period;
+    private final Supplier<Collection<T>> source;
+    private final Consumer<T> action;
+    private final Runnable onCycleStart; // 可为 null
+    private final Deque<T> queue = new ArrayDeque<>();
+    private final DoubleSupplier budgetMs;
+    private long budgetNanos;
+    private int tick = 0; // 当前轮内的 tick 序号
+
+    public TimeSlicedExecutor(Plugin plugin, String name, int period, DoubleSupplier budgetMs,
+                              Supplier<Collection<T>> source, Consumer<T> action, Runnable onCycleStart) {
+        this.plugin = plugin;
+        this.name = name;
+        this.period = Math.max(1, period);
+        this.budgetMs = budgetMs;
+        this.source = source;
+        this.action = action;
+        this.onCycleStart = onCycleStart;
+    }
+
+    // 每 tick 运行一次；调用方保留返回的任务，停用时取消
+    public BukkitTask start() {
+        return runTaskTimer(plugin, 1, 1);
+    }
+
+    public int getPendingCount() { return queue.size(); }
+
+    @Override
+    public void run() {
+        boolean lagging = tick == 0 && !queue.isEmpty();
+        if (tick == 0 && !lagging) {
+            try {
+                budgetNanos = (long) (budgetMs.getAsDouble() * 1_000_000);
+                if (onCycleStart != null) onCycleStart.run();
+                queue.addAll(source.get());
+            } catch (Exception e) {
+                plugin.getLogger().severe(name + " 出错: " + e.getMessage());
+            }
+        }
+
+        // 本 tick 应处理的数量：剩余量除以本轮剩余 tick 数（向上取整）；落后时尽量追赶
+        int ticksLeft = period - tick;
+        int quota = lagging ? queue.size() : (queue.size() + ticksLeft - 1) / ticksLeft;
+        long deadline = System.nanoTime() + budgetNanos;
+        for (int i = 0; i < quota && !queue.isEmpty(); i++) {
+            if (i > 0 && System.nanoTime() >= deadline) break;
+            T item = queue.pollFirst();
+            try {
+                action.accept(item);
+            } catch (Exception e) {
+                plugin.getLogger().severe(name + " 出错: " + e.getMessage());
+            }
+        }
+
+        if (!lagging) {
+            tick = (tick + 1) % period;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,364 @@
+package exe.example.blueprintMaster;
+
+import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
+import org.bukkit.Bukkit;
+import org.bukkit.DyeColor;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.block.Sign;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.sign.Side;
+import org.bukkit.block.sign.SignSide;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 撤销日志：记录生成时被覆盖的方块原状态，文件为 undo/<建筑ID>.journal
+// 文件头之后逐条记录：zigzag 变长整数坐标 + 调色板编号，编号首次出现时紧跟状态字符串
+// 版本2起每条记录末尾附加方块实体内容（长度 + 数据，长度为 0 表示没有），目前记录容器物品和告示牌文字
+// 主线程只把原状态放入队列（方块实体内容在主线程编码），其余编码和写盘在异步线程完成
+public class UndoJournal {
+    private static final int MAGIC = 0x42504D55; // "BPMU"
+    private static final short VERSION = 2;
+    private static final short VERSION_BLOCKS_ONLY = 1;
+    private static final int TILE_CONTAINER = 1;
+    private static final int TILE_SIGN = 2;
+    private static final int MAX_TILE_BYTES = 1 << 20;
+
+    private final TemplateManagerPlugin plugin;
+    private final File file;
+    private final Queue<Record> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Map<String, Integer> palette = new HashMap<>();
+    private DataOutputStream output;
+    private boolean unsupportedTileWarned = false; // 只在主线程访问
+
+    private UndoJournal(TemplateManagerPlugin plugin, File file) {
+        this.plugin = plugin;
+        this.file = file;
+    }
+
+    // 创建新日志；文件已存在时（从检查点恢复）截掉不完整的末尾记录后继续追加
+    public static UndoJournal open(TemplateManagerPlugin plugin, File file, Header header) throws IOException {
+        UndoJournal journal = new UndoJournal(plugin, file);
+        if (file.exists()) {
+            Contents existing = read(file);
+            if (existing.version != VERSION) {
+                throw new IOException("旧版本撤销日志无法继续追加");
+            }
+            for (int i = 0; i < existing.palette.size(); i++) {
+                journal.palette.put(existing.palette.get(i), i);
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(existing.validLength);
+            }
+            journal.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            return journal;
+        }
+
+        File dir = file.getParentFile();
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("无法创建目录: " + dir);
+        }
+        journal.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        journal.output.writeInt(MAGIC);
+        journal.output.writeShort(VERSION);
+        header.write(journal.output);
+        journal.output.flush();
+        return journal;
+    }
+
+    public File getFile() { return file; }
+
+    // 主线程调用：previous 必须是独立副本（Block.getBlockData 返回的即是），tile 为方块实体快照，可为 null
+    public void record(int x, int y, int z, BlockData previous, BlockState tile) {
+        byte[] tileData = null;
+        if (tile != null) {
+            tileData = encodeTile(tile);
+            if (tileData == null && !unsupportedTileWarned) {
+                unsupportedTileWarned = true;
+                plugin.getLogger().warning("生成覆盖了无法记录内容的方块实体（" + tile.getType()
+                        + " 等），撤销时只恢复方块本身: " + file.getName());
+            }
+        }
+        queue.add(new Record(x, y, z, previous, tileData));
+        if (flushScheduled.compareAndSet(false, true)) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, this::flush);
+        }
+    }
+
+    // 把队列中的记录编码写盘，可在任意线程调用
+    public synchronized void flush() {
+        flushScheduled.set(false);
+        if (output == null) return;
+        try {
+            Record record;
+            while ((record = queue.poll()) != null) {
+                String state = record.previous.getAsString();
+                Integer id = palette.get(state);
+                TemplateStructure.writeVarInt(output, zigzag(record.x));
+                TemplateStructure.writeVarInt(output, zigzag(record.y));
+                TemplateStructure.writeVarInt(output, zigzag(record.z));
+                if (id != null) {
+                    TemplateStructure.writeVarInt(output, id);
+                } else {
+                    id = palette.size();
+                    palette.put(state, id);
+                    TemplateStructure.writeVarInt(output, id);
+                    byte[] bytes = state.getBytes(StandardCharsets.UTF_8);
+                    TemplateStructure.writeVarInt(output, bytes.length);
+                    output.write(bytes);
+                }
+                TemplateStructure.writeVarInt(output, record.tile != null ? record.tile.length : 0);
+                if (record.tile != null) {
+                    output.write(record.tile);
+                }
+            }
+            output.flush();
+        } catch (IOException e) {
+            plugin.getLogger().warning("写入撤销日志失败: " + file.getName() + " - " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        flush();
+        if (output == null) return;
+        try {
+            output.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("关闭撤销日志失败: " + file.getName() + " - " + e.getMessage());
+        }
+        output = null;
+    }
+
+    // 方块实体内容编码（主线程调用）：容器按格子保存物品，告示牌保存两面的文字、颜色和发光/涂蜡状态
+    // 其他类型返回 null
+    private byte[] encodeTile(BlockState tile) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            if (tile instanceof Container container) {
+                ItemStack[] items = container.getSnapshotInventory().getContents();
+                for (int i = 0; i < items.length; i++) {
+                    if (items[i] == null) items[i] = ItemStack.empty();
+                }
+                byte[] encoded = ItemStack.serializeItemsAsBytes(items);
+                out.writeByte(TILE_CONTAINER);
+                TemplateStructure.writeVarInt(out, encoded.length);
+                out.write(encoded);
+            } else if (tile instanceof Sign sign) {
+                out.writeByte(TILE_SIGN);
+                out.writeBoolean(sign.isWaxed());
+                for (Side side : Side.values()) {
+                    SignSide signSide = sign.getSide(side);
+                    DyeColor color = signSide.getColor();
+                    out.writeUTF(color != null ? color.name() : "");
+                    out.writeBoolean(signSide.isGlowingText());
+                    for (int line = 0; line < 4; line++) {
+                        out.writeUTF(GsonComponentSerializer.gson().serialize(signSide.line(line)));
+                    }
+                }
+            } else {
+                return null;
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (Exception e) {
+            plugin.getLogger().warning("记录方块实体失败: " + tile.getType() + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 把记录的方块实体内容写回（主线程调用，方块状态需已恢复）；类型已不匹配时跳过
+    public static void restoreTile(Block block, byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        BlockState state = block.getState();
+        int type = in.readByte();
+        if (type == TILE_CONTAINER && state instanceof Container container) {
+            int size = TemplateStructure.readVarInt(in);
+            if (size < 0 || size > MAX_TILE_BYTES) {
+                throw new IOException("无效的物品数据长度: " + size);
+            }
+            byte[] encoded = new byte[size];
+            in.readFully(encoded);
+            ItemStack[] items = ItemStack.deserializeItemsFromBytes(encoded);
+            container.getSnapshotInventory().setContents(
+                    Arrays.copyOf(items, container.getSnapshotInventory().getSize()));
+        } else if (type == TILE_SIGN && state instanceof Sign sign) {
+            sign.setWaxed(in.readBoolean());
+            for (Side side : Side.values()) {
+                SignSide signSide = sign.getSide(side);
+                String color = in.readUTF();
+                signSide.setColor(color.isEmpty() ? null : DyeColor.valueOf(color));
+                signSide.setGlowingText(in.readBoolean());
+                for (int line = 0; line < 4; line++) {
+                    signSide.line(line, GsonComponentSerializer.gson().deserialize(in.readUTF()));
+                }
+            }
+        } else {
+            return;
+        }
+        state.update(true, false);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static Header readHeader(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            readVersion(in);
+            return Header.read(in);
+        }
+    }
+
+    // 读取全部记录；末尾不完整的记录（写入时崩溃）会被忽略
+    public static Contents read(File file) throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+        DataInputStream in = new DataInputStream(bytes);
+        short version = readVersion(in);
+        Header header = Header.read(in);
+
+        Contents contents = new Contents(header, version);
+        contents.validLength = data.length - bytes.available();
+        try {
+            while (bytes.available() > 0) {
+                int x = unzigzag(TemplateStructure.readVarInt(in));
+                int y = unzigzag(TemplateStructure.readVarInt(in));
+                int z = unzigzag(TemplateStructure.readVarInt(in));
+                int id = TemplateStructure.readVarInt(in);
+                if (id == contents.palette.size()) {
+                    contents.palette.add(TemplateStructure.readState(in));
+                } else if (id > contents.palette.size()) {
+                    throw new IOException("无效的调色板编号: " + id);
+                }
+                if (version != VERSION_BLOCKS_ONLY) {
+                    int tileLength = TemplateStructure.readVarInt(in);
+                    if (tileLength < 0 || tileLength > MAX_TILE_BYTES) {
+                        throw new IOException("无效的方块实体数据长度: " + tileLength);
+                    }
+                    if (tileLength > 0) {
+                        byte[] tile = new byte[tileLength];
+                        in.readFully(tile);
+                        contents.tiles.put(contents.size, tile);
+                    }
+                }
+                contents.add(x, y, z, id);
+                contents.validLength = data.length - bytes.available();
+            }
+        } catch (EOFException e) {
+            // 最后一条记录不完整
+        }
+        return contents;
+    }
+
+    private static short readVersion(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("不是撤销日志文件");
+        }
+        short version = in.readShort();
+        if (version != VERSION && version != VERSION_BLOCKS_ONLY) {
+            throw new IOException("不支持的撤销日志版本: " + version);
+        }
+        return version;
+    }
+
+    private static class Record {
+        final int x, y, z;
+        final BlockData previous;
+        final byte[] tile; // 可为 null
+
+        Record(int x, int y, int z, BlockData previous, byte[] tile) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.previous = previous;
+            this.tile = tile;
+        }
+    }
+
+    public static class Header {
+        private final UUID buildingId;
+        private final UUID ownerId;
+        private final String world;
+        private final String templateName;
+        private final long created;
+
+        public Header(UUID buildingId, UUID ownerId, String world, String templateName, long created) {
+            this.buildingId = buildingId;
+            this.ownerId = ownerId;
+            this.world = world;
+            this.templateName = templateName;
+            this.created = created;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(buildingId.getMostSignificantBits());
+            out.writeLong(buildingId.getLeastSignificantBits());
+            out.writeLong(ownerId.getMostSignificantBits());
+            out.writeLong(ownerId.getLeastSignificantBits());
+            out.writeUTF(world);
+            out.writeUTF(templateName);
+            out.writeLong(created);
+        }
+
+        static Header read(DataInputStream in) throws IOException {
+            UUID buildingId = new UUID(in.readLong(), in.readLong());
+            UUID ownerId = new UUID(in.readLong(), in.readLong());
+            return new Header(buildingId, ownerId, in.readUTF(), in.readUTF(), in.readLong());
+        }
+
+        public UUID getBuildingId() { return buildingId; }
+        public UUID getOwnerId() { return ownerId; }
+        public String getWorld() { return world; }
+        public String getTemplateName() { return templateName; }
+        public long getCreated() { return created; }
+    }
+
+    // 日志内容：按记录顺序存放的坐标和调色板编号，方块实体内容按记录序号另存
+    public static class Contents {
+        private final Header header;
+        private final short version;
+        private final List<String> palette = new ArrayList<>();
+        private final Map<Integer, byte[]> tiles = new HashMap<>();
+        private int[] coords = new int[3 * 256];
+        private int[] ids = new int[256];
+        private int size = 0;
+        private long validLength;
+
+        Contents(Header header, short version) {
+            this.header = header;
+            this.version = version;
+        }
+
+        void add(int x, int y, int z, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                coords = Arrays.copyOf(coords, size * 6);
+            }
+            coords[size * 3] = x;
+            coords[size * 3 + 1] = y;
+            coords[size * 3 + 2] = z;
+            ids[size++] = id;
+        }
+
+        public Header getHeader() { return header; }
+        public int size() { return size; }
+        public int getX(int i) { return coords[i * 3]; }
+        public int getY(int i) { return coords[i * 3 + 1]; }
+        public int getZ(int i) { return coords[i * 3 + 2]; }
+        public String getState(int i) { return palette.get(ids[i]); }
+        public byte[] getTile(int i) { return tiles.get(i); }
+    }
+}
\ No newline at end of file
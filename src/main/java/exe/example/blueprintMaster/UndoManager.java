@@ -0,0 +1,245 @@
+package exe.example.blueprintMaster;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 撤销管理：每次生成写一份撤销日志（undo/<建筑ID>.journal），按所有者保留最近若干份
+// 撤销时异步读取日志，再由全局放置调度器在主线程按预算、按区块分组写回
+public class UndoManager {
+    private final TemplateManagerPlugin plugin;
+    private final File undoDir;
+    private final Map<UUID, UndoJournal> openJournals = new ConcurrentHashMap<>();
+    private final Set<UUID> undoing = ConcurrentHashMap.newKeySet(); // 正在撤销的建筑，完成前不能再次撤销
+    private int historyLimit;
+
+    public UndoManager(TemplateManagerPlugin plugin) {
+        this.plugin = plugin;
+        this.undoDir = new File(plugin.getDataFolder(), "undo");
+        reloadSettings();
+    }
+
+    public void reloadSettings() {
+        historyLimit = Math.max(1, plugin.getConfig().getInt("generation.undo_history", 5));
+    }
+
+    private File getJournalFile(UUID buildingId) {
+        return new File(undoDir, buildingId + ".journal");
+    }
+
+    // 在异步线程调用；打开失败时返回 null，生成照常进行但无法撤销
+    public UndoJournal open(UUID buildingId, UUID ownerId, World world, String templateName) {
+        try {
+            UndoJournal journal = UndoJournal.open(plugin, getJournalFile(buildingId),
+                    new UndoJournal.Header(buildingId, ownerId, world.getName(), templateName,
+                            System.currentTimeMillis()));
+            openJournals.put(buildingId, journal);
+            prune(ownerId);
+            return journal;
+        } catch (IOException e) {
+            plugin.getLogger().warning("无法创建撤销日志: " + buildingId + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 生成结束后关闭日志（保留文件以便撤销），写盘在异步线程完成
+    public void close(UUID buildingId) {
+        UndoJournal journal = openJournals.get(buildingId);
+        if (journal != null) {
+            Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+                journal.close();
+                openJournals.remove(buildingId, journal);
+            });
+        }
+    }
+
+    public void shutdown() {
+        for (UndoJournal journal : openJournals.values()) {
+            journal.close();
+        }
+        openJournals.clear();
+    }
+
+    // 所有者最近一次生成且未在撤销中的建筑 ID，没有时返回 null（读取文件头，在异步线程调用）
+    public UUID findLatest(UUID ownerId) {
+        UndoJournal.Header latest = null;
+        for (UndoJournal.Header header : readHeaders()) {
+            if (header.getOwnerId().equals(ownerId) && !undoing.contains(header.getBuildingId())
+                    && (latest == null || header.getCreated() > latest.getCreated())) {
+                latest = header;
+            }
+        }
+        return latest != null ? latest.getBuildingId() : null;
+    }
+
+    // 超出保留数量的旧日志直接删除，正在写入的不删除
+    private void prune(UUID ownerId) {
+        List<UndoJournal.Header> owned = new ArrayList<>();
+        for (UndoJournal.Header header : readHeaders()) {
+            if (header.getOwnerId().equals(ownerId) && !openJournals.containsKey(header.getBuildingId())
+                    && !undoing.contains(header.getBuildingId())) {
+                owned.add(header);
+            }
+        }
+        owned.sort(Comparator.comparingLong(UndoJournal.Header::getCreated).reversed());
+        for (int i = historyLimit; i < owned.size(); i++) {
+            File file = getJournalFile(owned.get(i).getBuildingId());
+            if (!file.delete()) {
+                plugin.getLogger().warning("无法删除旧撤销日志: " + file.getName());
+            }
+        }
+    }
+
+    private List<UndoJournal.Header> readHeaders() {
+        List<UndoJournal.Header> headers = new ArrayList<>();
+        File[] files = undoDir.listFiles((dir, name) -> name.endsWith(".journal"));
+        if (files == null) return headers;
+        for (File file : files) {
+            try {
+                headers.add(UndoJournal.readHeader(file));
+            } catch (IOException e) {
+                plugin.getLogger().warning("撤销日志损坏: " + file.getName() + " - " + e.getMessage());
+            }
+        }
+        return headers;
+    }
+
+    // 撤销一次生成：按记录的相反顺序恢复原状态，完成后删除日志并在主线程回调（可在任意线程调用）
+    // 同一建筑已在撤销中时返回 false，不会重复回放日志
+    public boolean undo(UUID buildingId, Runnable callback) {
+        if (!undoing.add(buildingId)) {
+            return false;
+        }
+        Runnable onComplete = () -> {
+            undoing.remove(buildingId);
+            callback.run();
+        };
+
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            // 等待尚未写完的记录落盘
+            UndoJournal journal = openJournals.remove(buildingId);
+            if (journal != null) {
+                journal.close();
+            }
+
+            File file = getJournalFile(buildingId);
+            UndoJournal.Contents contents;
+            try {
+                contents = UndoJournal.read(file);
+            } catch (IOException e) {
+                plugin.getLogger().warning("读取撤销日志失败: " + file.getName() + " - " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, onComplete);
+                return;
+            }
+
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                World world = Bukkit.getWorld(contents.getHeader().getWorld());
+                if (world == null) {
+                    plugin.getLogger().warning("撤销失败，世界不存在: " + contents.getHeader().getWorld());
+                    onComplete.run();
+                    return;
+                }
+                if (contents.size() == 0) {
+                    file.delete();
+                    onComplete.run();
+                    return;
+                }
+
+                // 恢复前先加载记录覆盖的区块，完成后释放票据
+                int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+                int maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+                for (int i = 0; i < contents.size(); i++) {
+                    minX = Math.min(minX, contents.getX(i));
+                    minZ = Math.min(minZ, contents.getZ(i));
+                    maxX = Math.max(maxX, contents.getX(i));
+                    maxZ = Math.max(maxZ, contents.getZ(i));
+                }
+                ChunkPreloader.load(plugin, world, minX, minZ, maxX, maxZ, chunks ->
+                        plugin.getPlacementScheduler().submit(new UndoTask(world, contents, file, () -> {
+                            if (chunks != null) chunks.release();
+                            onComplete.run();
+                        })));
+            });
+        });
+        return true;
+    }
+
+    private class UndoTask implements PlacementScheduler.Job {
+        private final World world;
+        private final UndoJournal.Contents contents;
+        private final File file;
+        private final Runnable onComplete;
+        private int position;
+        private boolean finished = false;
+
+        UndoTask(World world, UndoJournal.Contents contents, File file, Runnable onComplete) {
+            this.world = world;
+            this.contents = contents;
+            this.file = file;
+            this.onComplete = onComplete;
+            this.position = contents.size();
+        }
+
+        @Override
+        public void startTick() {
+        }
+
+        @Override
+        public int step(int limit) {
+            if (finished) return 0;
+
+            int processed = 0;
+            try {
+                BlockBatch batch = new BlockBatch(limit);
+                int end = position;
+                while (processed < limit && position > 0) {
+                    int i = --position;
+                    processed++;
+                    batch.add(i, contents.getX(i), contents.getY(i), contents.getZ(i),
+                            BlockDataCache.get(contents.getState(i)));
+                }
+                batch.apply(world, null);
+
+                // 方块状态恢复后再写回方块实体内容，仍按记录的相反顺序
+                for (int i = end - 1; i >= position; i--) {
+                    byte[] tile = contents.getTile(i);
+                    if (tile == null) continue;
+                    try {
+                        UndoJournal.restoreTile(
+                                world.getBlockAt(contents.getX(i), contents.getY(i), contents.getZ(i)), tile);
+                    } catch (Exception e) {
+                        plugin.getLogger().warning("恢复方块实体内容失败: " + contents.getX(i) + ","
+                                + contents.getY(i) + "," + contents.getZ(i) + " - " + e.getMessage());
+                    }
+                }
+
+                if (position == 0) {
+                    finished = true;
+                    file.delete();
+                    onComplete.run();
+                }
+            } catch (Exception e) {
+                abort(e);
+            }
+            return processed;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        // 中途出错：保留日志文件以便排查，释放区块票据并照常回调
+        @Override
+        public void abort(Exception cause) {
+            if (finished) return;
+            finished = true;
+            plugin.getLogger().severe("撤销时出错，已保留日志 " + file.getName() + ": " + cause.getMessage());
+            onComplete.run();
+        }
+    }
+}
\ No newline at end of file